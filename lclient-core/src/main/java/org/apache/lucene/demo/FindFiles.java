@@ -77,13 +77,11 @@ public class FindFiles {
 
       String q = query.replace("'", "\"");
 
-      new LQuery(cmd).filter(q).sort("id asc").toDocumentPairStream()
+      new LQuery(cmd).filter(q).sort("id asc").toHighlightedStream("text", /* fragSize */ 100, /* maxFragments */ 3)
       .map(pair -> {
         Map<String, String> map = Maps.newHashMap();
-        map.put("id", Documents.toMap(schema, pair.right).get("id").toString());
-        try {
-          map.put("hl", cmd.highlighting(q, pair.left.doc, "text"));
-        } catch (IOException e) { }
+        map.put("id", Documents.toMap(schema, pair.left).get("id").toString());
+        map.put("hl", pair.right);
         return map;
       })
       .forEach(map -> { System.out.println(map.get("id") + " " + map.get("hl")); });
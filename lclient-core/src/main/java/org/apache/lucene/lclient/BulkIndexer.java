@@ -0,0 +1,156 @@
+package org.apache.lucene.lclient;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.function.Supplier;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.lucene.store.AlreadyClosedException;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+// the caller's thread pulls documents into batches, a bounded queue holds it back while the indexing threads are busy.
+final class BulkIndexer {
+
+  private static final Batch END = new Batch(-1, Collections.emptyList());
+  private static final long OFFER_MILLIS = 100;
+
+  private final DocumentWriter writer;
+  private final Supplier<Throwable> tragicException;
+  private final int threads;
+  private final int batchSize;
+  private final int maxErrors;
+  private final String threadName;
+
+  private final AtomicLong written = new AtomicLong();
+  private final LongAccumulator generation = new LongAccumulator(Math::max, -1);
+  private final AtomicInteger failed = new AtomicInteger();
+  private final ConcurrentLinkedQueue<ImmutablePair<Long,Exception>> errors = new ConcurrentLinkedQueue<>();
+
+  // tragicException is the IndexWriter's, once it is set every later document would fail too.
+  BulkIndexer(DocumentWriter writer, Supplier<Throwable> tragicException, int threads, int batchSize, int maxErrors, String threadName) {
+    Preconditions.checkArgument(threads > 0, "threads must be > 0");
+    Preconditions.checkArgument(batchSize > 0, "batchSize must be > 0");
+    Preconditions.checkArgument(maxErrors >= 0, "maxErrors must be >= 0");
+    this.writer = writer;
+    this.tragicException = tragicException;
+    this.threads = threads;
+    this.batchSize = batchSize;
+    this.maxErrors = maxErrors;
+    this.threadName = threadName;
+  }
+
+  LBulkResult run(Iterator<LDocument> docs) throws IOException {
+    long start = System.nanoTime();
+    BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(2 * threads);
+    ExecutorService executor = Executors.newFixedThreadPool(threads,
+      new ThreadFactoryBuilder().setNameFormat(threadName + "-%d").setDaemon(true).build());
+    List<Future<?>> workers = new ArrayList<>(threads);
+    try {
+      for (int i = 0; i < threads; i++) {
+        workers.add(executor.submit(() -> work(queue)));
+      }
+      try {
+        long position = 0;
+        while (docs.hasNext()) {
+          List<LDocument> batch = new ArrayList<>(batchSize);
+          while ((batch.size() < batchSize) && docs.hasNext()) {
+            batch.add(docs.next());
+          }
+          put(queue, new Batch(position, batch), workers);
+          position += batch.size();
+        }
+      } finally {
+        for (int i = 0; i < threads; i++) {
+          put(queue, END, workers);
+        }
+        for (Future<?> worker : workers) {
+          worker.get();
+        }
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(e.getMessage());
+    } catch (ExecutionException e) {
+      executor.shutdownNow();
+      Throwables.propagateIfPossible(e.getCause(), IOException.class);
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+    List<ImmutablePair<Long,Exception>> sorted = new ArrayList<>(errors);
+    sorted.sort(Comparator.comparing(ImmutablePair::getLeft));
+    return new LBulkResult(written.get(), failed.get(), Collections.unmodifiableList(sorted), System.nanoTime() - start, generation.get());
+  }
+
+  // a worker that stopped before END has failed, and waiting on the queue would block forever.
+  private static void put(BlockingQueue<Batch> queue, Batch batch, List<Future<?>> workers) throws InterruptedException, ExecutionException {
+    while (!queue.offer(batch, OFFER_MILLIS, TimeUnit.MILLISECONDS)) {
+      for (Future<?> worker : workers) {
+        if (worker.isDone()) {
+          worker.get();
+          throw new IllegalStateException("indexing thread stopped");
+        }
+      }
+    }
+  }
+
+  // a closed or tragically failed writer stops the bulk: the worker fails, and run() rethrows its exception.
+  private Void work(BlockingQueue<Batch> queue) throws InterruptedException, IOException {
+    while (true) {
+      Batch batch = queue.take();
+      if (batch == END) {
+        return null;
+      }
+      for (int i = 0; i < batch.docs.size(); i++) {
+        try {
+          generation.accumulate(writer.write(batch.docs.get(i)));
+          written.incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+          if ((e instanceof AlreadyClosedException) || (tragicException.get() != null)) {
+            throw e;
+          }
+          if (failed.incrementAndGet() <= maxErrors) {
+            errors.add(ImmutablePair.of(batch.position + i, e));
+          }
+        }
+      }
+    }
+  }
+
+  interface DocumentWriter {
+    long write(LDocument doc) throws IOException;
+  }
+
+  private static final class Batch {
+
+    final long position;
+    final List<LDocument> docs;
+
+    Batch(long position, List<LDocument> docs) {
+      this.position = position;
+      this.docs = docs;
+    }
+
+  }
+
+}
@@ -0,0 +1,132 @@
+package org.apache.lucene.lclient;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+// reads a projection column-wise from doc values, so no stored-field block is decompressed.
+final class DocValuesProjection {
+
+  private final List<LeafReaderContext> leaves;
+  private final String[] fields;
+  private final FieldType[] types;
+  private final Column[][] columns;
+
+  private DocValuesProjection(IndexReader reader, String[] fields, FieldType[] types) {
+    this.leaves = reader.leaves();
+    this.fields = fields;
+    this.types = types;
+    this.columns = new Column[leaves.size()][];
+  }
+
+  // null when a requested field is unknown to the schema.
+  static DocValuesProjection create(IndexReader reader, LSchema schema, Set<String> fieldsToLoad) {
+    if (fieldsToLoad.isEmpty()) {
+      return null;
+    }
+    String[] fields = fieldsToLoad.toArray(new String[fieldsToLoad.size()]);
+    FieldType[] types = new FieldType[fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      if (!schema.hasField(fields[i])) {
+        return null;
+      }
+      types[i] = schema.getFieldType(fields[i]);
+    }
+    return new DocValuesProjection(reader, fields, types);
+  }
+
+  // null when the segment holding doc was written without doc values for one of the fields.
+  Document document(int doc) throws IOException {
+    int leafIndex = ReaderUtil.subIndex(doc, leaves);
+    Column[] leafColumns = columns[leafIndex];
+    if (leafColumns == null) {
+      leafColumns = columns[leafIndex] = open(leaves.get(leafIndex).reader());
+    }
+    if (leafColumns.length == 0) {
+      return null;
+    }
+    int segmentDoc = doc - leaves.get(leafIndex).docBase;
+    Document document = new Document();
+    for (Column column : leafColumns) {
+      column.append(document, segmentDoc);
+    }
+    return document;
+  }
+
+  private Column[] open(LeafReader reader) throws IOException {
+    Column[] leafColumns = new Column[fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      FieldInfo info = reader.getFieldInfos().fieldInfo(fields[i]);
+      if ((info != null) && (info.getDocValuesType() == DocValuesType.NONE)) {
+        return new Column[0];
+      }
+      leafColumns[i] = column(reader, fields[i], types[i]);
+    }
+    return leafColumns;
+  }
+
+  private static Column column(LeafReader reader, String field, FieldType type) throws IOException {
+    if (type.equals(LDataType.TEXT)) {
+      BinaryDocValues values = reader.getBinaryDocValues(field);
+      Bits docsWithField = reader.getDocsWithField(field);
+      return (document, doc) -> {
+        if (values != null && docsWithField.get(doc)) {
+          document.add(new StoredField(field, values.get(doc).utf8ToString()));
+        }
+      };
+    }
+    if (type.equals(LDataType.STRING)) {
+      SortedDocValues values = reader.getSortedDocValues(field);
+      return (document, doc) -> {
+        int ord = (values == null) ? -1 : values.getOrd(doc);
+        if (ord >= 0) {
+          BytesRef term = values.lookupOrd(ord);
+          document.add(new StoredField(field, term.utf8ToString()));
+        }
+      };
+    }
+    NumericDocValues values = reader.getNumericDocValues(field);
+    Bits docsWithField = reader.getDocsWithField(field);
+    if (values == null) {
+      return (document, doc) -> { };
+    }
+    if (type.equals(LDataType.DOUBLE)) {
+      return (document, doc) -> {
+        if (docsWithField.get(doc)) document.add(new StoredField(field, Double.longBitsToDouble(values.get(doc))));
+      };
+    }
+    if (type.equals(LDataType.FLOAT)) {
+      return (document, doc) -> {
+        if (docsWithField.get(doc)) document.add(new StoredField(field, Float.intBitsToFloat((int) values.get(doc))));
+      };
+    }
+    if (type.equals(LDataType.INT)) {
+      return (document, doc) -> {
+        if (docsWithField.get(doc)) document.add(new StoredField(field, (int) values.get(doc)));
+      };
+    }
+    return (document, doc) -> {
+      if (docsWithField.get(doc)) document.add(new StoredField(field, values.get(doc)));
+    };
+  }
+
+  private interface Column {
+    void append(Document document, int doc);
+  }
+
+}
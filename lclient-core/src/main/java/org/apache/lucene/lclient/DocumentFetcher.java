@@ -0,0 +1,185 @@
+package org.apache.lucene.lclient;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.StoredFieldVisitor;
+import org.apache.lucene.search.ScoreDoc;
+
+// loads a page of hits in docID order, so each compressed stored-field block is read once per page.
+final class DocumentFetcher {
+
+  private static final int FIRST_BATCH_SIZE = 16;
+
+  private final List<LeafReaderContext> leaves;
+  private final DocValuesProjection projection;
+  private final Visitor visitor;
+
+  DocumentFetcher(IndexReader reader, LSchema schema, Set<String> fieldsToLoad) {
+    this.leaves = reader.leaves();
+    this.projection = (fieldsToLoad == null) ? null : DocValuesProjection.create(reader, schema, fieldsToLoad);
+    this.visitor = new Visitor(fieldsToLoad);
+  }
+
+  // documents come back in the order of hits.
+  Document[] fetch(ScoreDoc[] hits) throws IOException {
+    Integer[] order = new Integer[hits.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Integer.compare(hits[a].doc, hits[b].doc));
+    Document[] docs = new Document[hits.length];
+    LeafReaderContext leaf = null;
+    for (int i : order) {
+      int doc = hits[i].doc;
+      if ((leaf == null) || (doc >= leaf.docBase + leaf.reader().maxDoc())) {
+        leaf = leaves.get(ReaderUtil.subIndex(doc, leaves));
+      }
+      docs[i] = document(leaf, doc);
+    }
+    return docs;
+  }
+
+  // doc is top-level, leaf is the segment holding it.
+  Document document(LeafReaderContext leaf, int doc) throws IOException {
+    Document document = (projection == null) ? null : projection.document(doc);
+    if (document == null) {
+      visitor.reset();
+      leaf.reader().document(doc - leaf.docBase, visitor);
+      document = visitor.doc;
+    }
+    return document;
+  }
+
+  // batches start small so a findFirst() doesn't load a whole page, then grow up to maxBatchSize.
+  <T> Stream<T> stream(Stream<ScoreDoc> hits, int maxBatchSize, BiFunction<ScoreDoc,Document,T> mapper) {
+    return batchStream(hits, maxBatchSize, (batch, docs) -> {
+      List<T> results = new ArrayList<>(batch.length);
+      for (int i = 0; i < batch.length; i++) {
+        results.add(mapper.apply(batch[i], docs[i]));
+      }
+      return results;
+    });
+  }
+
+  // mapper sees a whole batch at once, and returns one result per hit in the order of hits.
+  <T> Stream<T> batchStream(Stream<ScoreDoc> hits, int maxBatchSize, BatchMapper<T> mapper) {
+    Iterator<ScoreDoc> iterator = hits.iterator();
+    Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+      private List<T> results = Collections.emptyList();
+      private int next;
+      private int batchSize = Math.min(FIRST_BATCH_SIZE, maxBatchSize);
+
+      @Override
+      public boolean tryAdvance(Consumer<? super T> action) {
+        if ((next == results.size()) && !fill()) {
+          return false;
+        }
+        action.accept(results.get(next++));
+        return true;
+      }
+
+      private boolean fill() {
+        ScoreDoc[] scoreDocs = new ScoreDoc[batchSize];
+        int size = 0;
+        while ((size < batchSize) && iterator.hasNext()) {
+          scoreDocs[size++] = iterator.next();
+        }
+        if (size == 0) {
+          return false;
+        }
+        ScoreDoc[] batch = Arrays.copyOf(scoreDocs, size);
+        try {
+          results = mapper.apply(batch, fetch(batch));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        next = 0;
+        batchSize = Math.min(batchSize * 2, maxBatchSize);
+        return true;
+      }
+    };
+    return StreamSupport.stream(spliterator, /* parallel */ false).onClose(hits::close);
+  }
+
+  interface BatchMapper<T> {
+    List<T> apply(ScoreDoc[] batch, Document[] docs) throws IOException;
+  }
+
+  // same fields as DocumentStoredFieldVisitor, but one instance serves every hit of the fetcher.
+  private static final class Visitor extends StoredFieldVisitor {
+
+    private final Set<String> fieldsToLoad;
+    private Document doc;
+
+    Visitor(Set<String> fieldsToLoad) {
+      this.fieldsToLoad = fieldsToLoad;
+    }
+
+    void reset() {
+      doc = new Document();
+    }
+
+    @Override
+    public void binaryField(FieldInfo fieldInfo, byte[] value) throws IOException {
+      doc.add(new StoredField(fieldInfo.name, value));
+    }
+
+    @Override
+    public void stringField(FieldInfo fieldInfo, String value) throws IOException {
+      FieldType ft = new FieldType(TextField.TYPE_STORED);
+      ft.setStoreTermVectors(fieldInfo.hasVectors());
+      ft.setOmitNorms(fieldInfo.omitsNorms());
+      ft.setIndexOptions(fieldInfo.getIndexOptions());
+      doc.add(new Field(fieldInfo.name, value, ft));
+    }
+
+    @Override
+    public void intField(FieldInfo fieldInfo, int value) {
+      doc.add(new StoredField(fieldInfo.name, value));
+    }
+
+    @Override
+    public void longField(FieldInfo fieldInfo, long value) {
+      doc.add(new StoredField(fieldInfo.name, value));
+    }
+
+    @Override
+    public void floatField(FieldInfo fieldInfo, float value) {
+      doc.add(new StoredField(fieldInfo.name, value));
+    }
+
+    @Override
+    public void doubleField(FieldInfo fieldInfo, double value) {
+      doc.add(new StoredField(fieldInfo.name, value));
+    }
+
+    @Override
+    public Status needsField(FieldInfo fieldInfo) throws IOException {
+      return ((fieldsToLoad == null) || fieldsToLoad.contains(fieldInfo.name)) ? Status.YES : Status.NO;
+    }
+
+  }
+
+}
@@ -0,0 +1,100 @@
+package org.apache.lucene.lclient;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Weight;
+
+// visits matches segment by segment in index order, holding one segment iterator and no hit buffer.
+final class ExportSpliterator implements Spliterator<Document> {
+
+  private final Weight weight;
+  private final List<LeafReaderContext> leaves;
+  private final Supplier<DocumentFetcher> fetchers;
+  private final int to;
+  private int next;
+  private LeafReaderContext leaf;
+  private DocIdSetIterator iterator;
+  private DocumentFetcher fetcher;
+
+  private ExportSpliterator(Weight weight, List<LeafReaderContext> leaves, Supplier<DocumentFetcher> fetchers, int from, int to) {
+    this.weight = weight;
+    this.leaves = leaves;
+    this.fetchers = fetchers;
+    this.next = from;
+    this.to = to;
+  }
+
+  // each split part loads documents through its own fetcher, so parts can be consumed on different threads.
+  static ExportSpliterator open(IndexSearcher searcher, Query query, Supplier<DocumentFetcher> fetchers) throws IOException {
+    Weight weight = searcher.createNormalizedWeight(query, false);
+    List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+    return new ExportSpliterator(weight, leaves, fetchers, 0, leaves.size());
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super Document> action) {
+    try {
+      while (true) {
+        if (iterator == null) {
+          if (next == to) {
+            return false;
+          }
+          leaf = leaves.get(next++);
+          iterator = weight.scorer(leaf, leaf.reader().getLiveDocs());
+          if (iterator == null) {
+            continue;
+          }
+        }
+        int doc = iterator.nextDoc();
+        if (doc == DocIdSetIterator.NO_MORE_DOCS) {
+          iterator = null;
+          continue;
+        }
+        if (fetcher == null) {
+          fetcher = fetchers.get();
+        }
+        action.accept(fetcher.document(leaf, leaf.docBase + doc));
+        return true;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // only segments not yet started are handed out, half of them to the new part.
+  @Override
+  public Spliterator<Document> trySplit() {
+    if ((iterator != null) || (to - next < 2)) {
+      return null;
+    }
+    int mid = next + (to - next) / 2;
+    ExportSpliterator prefix = new ExportSpliterator(weight, leaves, fetchers, next, mid);
+    next = mid;
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    long size = 0;
+    for (int i = next; i < to; i++) {
+      size += leaves.get(i).reader().numDocs();
+    }
+    return size;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | NONNULL;
+  }
+
+}
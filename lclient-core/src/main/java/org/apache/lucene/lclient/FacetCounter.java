@@ -0,0 +1,131 @@
+package org.apache.lucene.lclient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Scorer;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+// counts segment ordinals in an int[] per field and turns only the non-zero ones into values when the segment is done.
+final class FacetCounter implements Collector {
+
+  private static final Comparator<ImmutablePair<String,Integer>> ORDER =
+    Comparator.comparing((ImmutablePair<String,Integer> pair) -> pair.right).reversed()
+      .thenComparing(pair -> pair.left);
+
+  private final String[] fields;
+  private final List<Map<String,Integer>> counts = new ArrayList<>();
+  private SortedDocValues[] values;
+  private int[][] ordCounts;
+
+  private FacetCounter(String[] fields) {
+    this.fields = fields;
+    for (int i = 0; i < fields.length; i++) {
+      counts.add(Maps.newHashMap());
+    }
+  }
+
+  static CollectorManager<FacetCounter,Map<String,List<ImmutablePair<String,Integer>>>> manager(LSchema schema, String[] fields, int topN) {
+    Preconditions.checkArgument(topN > 0, "topN must be > 0");
+    for (String field : fields) {
+      Preconditions.checkArgument(schema.getFieldType(field).equals(LDataType.STRING), "field %s is not a string field", field);
+    }
+    return new CollectorManager<FacetCounter,Map<String,List<ImmutablePair<String,Integer>>>>() {
+      @Override
+      public FacetCounter newCollector() {
+        return new FacetCounter(fields);
+      }
+
+      @Override
+      public Map<String,List<ImmutablePair<String,Integer>>> reduce(Collection<FacetCounter> collectors) {
+        Map<String,List<ImmutablePair<String,Integer>>> facets = Maps.newLinkedHashMap();
+        for (int i = 0; i < fields.length; i++) {
+          Map<String,Integer> merged = Maps.newHashMap();
+          for (FacetCounter collector : collectors) {
+            collector.flush();
+            collector.counts.get(i).forEach((value, count) -> merged.merge(value, count, Integer::sum));
+          }
+          facets.put(fields[i], top(merged, topN));
+        }
+        return facets;
+      }
+    };
+  }
+
+  // bounded min-heap, the weakest of the current top N sits on top.
+  private static List<ImmutablePair<String,Integer>> top(Map<String,Integer> counts, int topN) {
+    PriorityQueue<ImmutablePair<String,Integer>> queue = new PriorityQueue<>(Math.min(topN, counts.size()) + 1, ORDER.reversed());
+    for (Map.Entry<String,Integer> entry : counts.entrySet()) {
+      ImmutablePair<String,Integer> pair = ImmutablePair.of(entry.getKey(), entry.getValue());
+      if (queue.size() < topN) {
+        queue.add(pair);
+      } else if (ORDER.compare(pair, queue.peek()) < 0) {
+        queue.poll();
+        queue.add(pair);
+      }
+    }
+    List<ImmutablePair<String,Integer>> top = new ArrayList<>(queue);
+    top.sort(ORDER);
+    return top;
+  }
+
+  @Override
+  public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+    flush();
+    values = new SortedDocValues[fields.length];
+    ordCounts = new int[fields.length][];
+    for (int i = 0; i < fields.length; i++) {
+      values[i] = context.reader().getSortedDocValues(fields[i]);
+      ordCounts[i] = (values[i] == null) ? null : new int[values[i].getValueCount()];
+    }
+    return new LeafCollector() {
+      @Override
+      public void setScorer(Scorer scorer) { }
+
+      @Override
+      public void collect(int doc) {
+        for (int i = 0; i < values.length; i++) {
+          if (values[i] == null) continue;
+          int ord = values[i].getOrd(doc);
+          if (ord >= 0) ordCounts[i][ord]++;
+        }
+      }
+    };
+  }
+
+  @Override
+  public boolean needsScores() {
+    return false;
+  }
+
+  private void flush() {
+    if (values == null) {
+      return;
+    }
+    for (int i = 0; i < fields.length; i++) {
+      if (values[i] == null) continue;
+      int[] ords = ordCounts[i];
+      for (int ord = 0; ord < ords.length; ord++) {
+        if (ords[ord] > 0) {
+          counts.get(i).merge(values[i].lookupOrd(ord).utf8ToString(), ords[ord], Integer::sum);
+        }
+      }
+    }
+    values = null;
+    ordCounts = null;
+  }
+
+}
@@ -0,0 +1,375 @@
+package org.apache.lucene.lclient;
+
+import org.apache.lucene.document.BinaryDocValuesField;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoubleField;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.FloatField;
+import org.apache.lucene.document.IntField;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+
+// write strategy of one schema field, chosen once by LSchema.build() instead of per value.
+abstract class FieldAppender {
+
+  final String name;
+
+  private FieldAppender(String name) {
+    this.name = name;
+  }
+
+  static FieldAppender of(String name, FieldType dataType, LHighlightMode highlightMode) {
+    if (dataType.equals(LDataType.TEXT)) {
+      FieldType textType = (highlightMode == LHighlightMode.POSTINGS) ?
+        LDataType.TEXT_OFFSETS_NOT_STORED : LDataType.TEXT_NOT_STORED;
+      return new FieldAppender(name) {
+        @Override
+        Slot newSlot() {
+          return new TextSlot(name, textType);
+        }
+      };
+    }
+    if (dataType.equals(LDataType.DOUBLE)) {
+      return new FieldAppender(name) {
+        @Override
+        Slot newSlot() {
+          return new DoubleSlot(name);
+        }
+      };
+    }
+    if (dataType.equals(LDataType.FLOAT)) {
+      return new FieldAppender(name) {
+        @Override
+        Slot newSlot() {
+          return new FloatSlot(name);
+        }
+      };
+    }
+    if (dataType.equals(LDataType.INT)) {
+      return new FieldAppender(name) {
+        @Override
+        Slot newSlot() {
+          return new IntSlot(name);
+        }
+      };
+    }
+    if (dataType.equals(LDataType.LONG)) {
+      return new FieldAppender(name) {
+        @Override
+        Slot newSlot() {
+          return new LongSlot(name);
+        }
+      };
+    }
+    if (dataType.equals(LDataType.STRING)) {
+      return new FieldAppender(name) {
+        @Override
+        Slot newSlot() {
+          return new StringSlot(name);
+        }
+      };
+    }
+    throw new IllegalArgumentException("unsupported field type: " + name);
+  }
+
+  // the fields of one value; a reused slot only has its values reset.
+  abstract Slot newSlot();
+
+  abstract static class Slot {
+
+    final String name;
+
+    Slot(String name) {
+      this.name = name;
+    }
+
+    abstract void addTo(Document doc);
+
+    abstract void set(CharSequence value);
+
+    // boxed numbers take the typed setters below, anything else is parsed from toString() as before.
+    void set(Object value) {
+      if ((value instanceof Integer) || (value instanceof Long) || (value instanceof Short) || (value instanceof Byte)) {
+        set(((Number) value).longValue());
+      } else if (value instanceof Float) {
+        set(((Float) value).floatValue());
+      } else if (value instanceof Double) {
+        set(((Double) value).doubleValue());
+      } else {
+        set(value.toString());
+      }
+    }
+
+    // numeric slots take a number only when their type holds it exactly, anything lossy fails with narrowing().
+    void set(int value) {
+      set((long) value);
+    }
+
+    void set(long value) {
+      set(Long.toString(value));
+    }
+
+    void set(float value) {
+      set(Float.toString(value));
+    }
+
+    void set(double value) {
+      set(Double.toString(value));
+    }
+
+    final IllegalArgumentException narrowing(Number value) {
+      return new IllegalArgumentException("field " + name + " can't hold " + value + " exactly");
+    }
+
+  }
+
+  private static final class DoubleSlot extends Slot {
+
+    private final Field field;
+    private final NumericDocValuesField docValues;
+
+    DoubleSlot(String name) {
+      super(name);
+      this.field = new DoubleField(name, 0d, LDataType.DOUBLE);
+      this.docValues = new NumericDocValuesField(name, 0L);
+    }
+
+    @Override
+    void addTo(Document doc) {
+      doc.add(field);
+      doc.add(docValues);
+    }
+
+    @Override
+    void set(CharSequence value) {
+      set(Double.parseDouble(value.toString()));
+    }
+
+    @Override
+    void set(long value) {
+      double d = value;
+      if ((d >= 0x1p63) || ((long) d != value)) {
+        throw narrowing(value);
+      }
+      set(d);
+    }
+
+    @Override
+    void set(float value) {
+      set((double) value);
+    }
+
+    @Override
+    void set(double value) {
+      field.setDoubleValue(value);
+      docValues.setLongValue(Double.doubleToLongBits(value));
+    }
+
+  }
+
+  private static final class FloatSlot extends Slot {
+
+    private final Field field;
+    private final NumericDocValuesField docValues;
+
+    FloatSlot(String name) {
+      super(name);
+      this.field = new FloatField(name, 0f, LDataType.FLOAT);
+      this.docValues = new NumericDocValuesField(name, 0L);
+    }
+
+    @Override
+    void addTo(Document doc) {
+      doc.add(field);
+      doc.add(docValues);
+    }
+
+    @Override
+    void set(CharSequence value) {
+      set(Float.parseFloat(value.toString()));
+    }
+
+    @Override
+    void set(long value) {
+      float f = value;
+      if ((f >= 0x1p63f) || ((long) f != value)) {
+        throw narrowing(value);
+      }
+      set(f);
+    }
+
+    @Override
+    void set(double value) {
+      float f = (float) value;
+      if ((f != value) && !Double.isNaN(value)) {
+        throw narrowing(value);
+      }
+      set(f);
+    }
+
+    @Override
+    void set(float value) {
+      field.setFloatValue(value);
+      docValues.setLongValue(Float.floatToIntBits(value));
+    }
+
+  }
+
+  private static final class IntSlot extends Slot {
+
+    private final Field field;
+    private final NumericDocValuesField docValues;
+
+    IntSlot(String name) {
+      super(name);
+      this.field = new IntField(name, 0, LDataType.INT);
+      this.docValues = new NumericDocValuesField(name, 0L);
+    }
+
+    @Override
+    void addTo(Document doc) {
+      doc.add(field);
+      doc.add(docValues);
+    }
+
+    @Override
+    void set(CharSequence value) {
+      set(Integer.parseInt(value.toString()));
+    }
+
+    @Override
+    void set(long value) {
+      if ((int) value != value) {
+        throw narrowing(value);
+      }
+      set((int) value);
+    }
+
+    @Override
+    void set(int value) {
+      field.setIntValue(value);
+      docValues.setLongValue(value);
+    }
+
+    @Override
+    void set(float value) {
+      set((double) value);
+    }
+
+    @Override
+    void set(double value) {
+      if ((int) value != value) {
+        throw narrowing(value);
+      }
+      set((int) value);
+    }
+
+  }
+
+  private static final class LongSlot extends Slot {
+
+    private final Field field;
+    private final NumericDocValuesField docValues;
+
+    LongSlot(String name) {
+      super(name);
+      this.field = new LongField(name, 0L, LDataType.LONG);
+      this.docValues = new NumericDocValuesField(name, 0L);
+    }
+
+    @Override
+    void addTo(Document doc) {
+      doc.add(field);
+      doc.add(docValues);
+    }
+
+    @Override
+    void set(CharSequence value) {
+      set(Long.parseLong(value.toString()));
+    }
+
+    @Override
+    void set(long value) {
+      field.setLongValue(value);
+      docValues.setLongValue(value);
+    }
+
+    @Override
+    void set(float value) {
+      set((double) value);
+    }
+
+    @Override
+    void set(double value) {
+      if ((value >= 0x1p63) || ((long) value != value)) {
+        throw narrowing(value);
+      }
+      set((long) value);
+    }
+
+  }
+
+  private static final class StringSlot extends Slot {
+
+    private final Field field;
+    private final SortedDocValuesField docValues;
+    private final BytesRefBuilder bytes = new BytesRefBuilder();
+
+    StringSlot(String name) {
+      super(name);
+      this.field = new Field(name, "", LDataType.STRING);
+      this.docValues = new SortedDocValuesField(name, new BytesRef());
+    }
+
+    @Override
+    void addTo(Document doc) {
+      doc.add(field);
+      doc.add(docValues);
+    }
+
+    @Override
+    void set(CharSequence value) {
+      field.setStringValue(value.toString());
+      bytes.copyChars(value);
+      docValues.setBytesValue(bytes.get());
+    }
+
+  }
+
+  private static final class TextSlot extends Slot {
+
+    private final Field stored;
+    private final BinaryDocValuesField docValues;
+    private final Field text;
+    private final BytesRefBuilder bytes = new BytesRefBuilder();
+
+    TextSlot(String name, FieldType textType) {
+      super(name);
+      this.stored = new Field(name, "", LDataType.TEXT_STORED);
+      this.docValues = new BinaryDocValuesField(name, new BytesRef());
+      this.text = new Field(name, "", textType);
+    }
+
+    @Override
+    void addTo(Document doc) {
+      doc.add(stored);
+      doc.add(docValues);
+      doc.add(text);
+    }
+
+    @Override
+    void set(CharSequence value) {
+      String s = value.toString();
+      stored.setStringValue(s);
+      bytes.copyChars(s);
+      docValues.setBytesValue(bytes.get());
+      text.setStringValue(s);
+    }
+
+  }
+
+}
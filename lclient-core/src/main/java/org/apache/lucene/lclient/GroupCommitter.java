@@ -0,0 +1,117 @@
+package org.apache.lucene.lclient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.index.IndexWriter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+// requests for the same writer that arrive within the window, or until maxPending of them, share one commit.
+// a request made while a commit runs waits for the next one, which also covers the changes made meanwhile.
+final class GroupCommitter implements Closeable {
+
+  private long windowMillis;
+  private int maxPending;
+  private ScheduledThreadPoolExecutor scheduler;
+  private final Map<IndexWriter,List<CompletableFuture<Void>>> pending = Maps.newHashMap();
+  private final Map<IndexWriter,WriteAheadLog> logs = Maps.newHashMap();
+
+  GroupCommitter(long windowMillis, int maxPending) {
+    configure(windowMillis, maxPending);
+  }
+
+  synchronized void configure(long windowMillis, int maxPending) {
+    Preconditions.checkArgument(windowMillis >= 0, "windowMillis must be >= 0");
+    Preconditions.checkArgument(maxPending > 0, "maxPending must be > 0");
+    this.windowMillis = windowMillis;
+    this.maxPending = maxPending;
+  }
+
+  // log, if not null, is truncated to the records the commit doesn't cover.
+  synchronized CompletableFuture<Void> commit(IndexWriter writer, WriteAheadLog log) {
+    if (log != null) {
+      logs.put(writer, log);
+    }
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    List<CompletableFuture<Void>> waiting = pending.get(writer);
+    if (waiting == null) {
+      waiting = new ArrayList<>();
+      pending.put(writer, waiting);
+      scheduler().schedule(() -> commitPending(writer), windowMillis, TimeUnit.MILLISECONDS);
+    }
+    waiting.add(future);
+    if (waiting.size() == maxPending) {
+      scheduler().execute(() -> commitPending(writer));
+    }
+    return future;
+  }
+
+  private ScheduledThreadPoolExecutor scheduler() {
+    if (scheduler == null) {
+      scheduler = new ScheduledThreadPoolExecutor(1,
+        new ThreadFactoryBuilder().setNameFormat("LConnection-commit-%d").setDaemon(true).build());
+      scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+    return scheduler;
+  }
+
+  private void commitPending(IndexWriter writer) {
+    List<CompletableFuture<Void>> waiting;
+    WriteAheadLog log;
+    synchronized (this) {
+      waiting = pending.remove(writer);
+      log = logs.get(writer);
+    }
+    if (waiting == null) {
+      return;
+    }
+    try {
+      // the roll prepares the commit, which then covers exactly the rolled generations
+      long generation = (log != null) ? log.roll(writer) : -1;
+      writer.commit();
+      if (log != null) {
+        log.truncate(generation);
+      }
+      waiting.forEach(future -> future.complete(null));
+    } catch (Throwable t) {
+      // an Error too, otherwise the scheduler swallows it and every caller waits forever
+      waiting.forEach(future -> future.completeExceptionally(t));
+    }
+  }
+
+  // pending requests are committed, and a running commit finishes, before the writers are closed.
+  @Override
+  public void close() throws IOException {
+    ScheduledThreadPoolExecutor running;
+    synchronized (this) {
+      running = scheduler;
+      scheduler = null;
+    }
+    // the running commit finishes first, two commits of one writer must not overlap a prepared commit
+    if (running != null) {
+      running.shutdown();
+      try {
+        running.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException(e.getMessage());
+      }
+    }
+    List<IndexWriter> writers;
+    synchronized (this) {
+      writers = new ArrayList<>(pending.keySet());
+    }
+    writers.forEach(this::commitPending);
+  }
+
+}
@@ -0,0 +1,87 @@
+package org.apache.lucene.lclient;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TotalHitCountCollector;
+import org.apache.lucene.search.Weight;
+
+final class HitCounts {
+
+  private HitCounts() { }
+
+  static int count(IndexSearcher searcher, Query query) throws IOException {
+    Query rewritten = searcher.rewrite(query);
+    IndexReader reader = searcher.getIndexReader();
+    if (rewritten instanceof MatchAllDocsQuery) {
+      return reader.numDocs();
+    }
+    if (rewritten instanceof TermQuery) {
+      return countTerm(searcher, (TermQuery) rewritten);
+    }
+    return searcher.search(rewritten, new CollectorManager<TotalHitCountCollector,Integer>() {
+      @Override
+      public TotalHitCountCollector newCollector() {
+        return new TotalHitCountCollector();
+      }
+
+      @Override
+      public Integer reduce(Collection<TotalHitCountCollector> collectors) {
+        int totalHits = 0;
+        for (TotalHitCountCollector collector : collectors) {
+          totalHits += collector.getTotalHits();
+        }
+        return totalHits;
+      }
+    });
+  }
+
+  static boolean exists(IndexSearcher searcher, Query query) throws IOException {
+    Query rewritten = searcher.rewrite(query);
+    if (rewritten instanceof MatchAllDocsQuery) {
+      return searcher.getIndexReader().numDocs() > 0;
+    }
+    Weight weight = searcher.createNormalizedWeight(rewritten, false);
+    for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+      Scorer scorer = weight.scorer(leaf, leaf.reader().getLiveDocs());
+      if (scorer != null && scorer.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // docFreq is exact only for segments without deletions, the others are counted by iterating.
+  private static int countTerm(IndexSearcher searcher, TermQuery query) throws IOException {
+    int count = 0;
+    Weight weight = null;
+    for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+      LeafReader reader = leaf.reader();
+      if (!reader.hasDeletions()) {
+        count += reader.docFreq(query.getTerm());
+        continue;
+      }
+      if (weight == null) {
+        weight = searcher.createNormalizedWeight(query, false);
+      }
+      Scorer scorer = weight.scorer(leaf, reader.getLiveDocs());
+      if (scorer != null) {
+        while (scorer.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+}
@@ -0,0 +1,67 @@
+package org.apache.lucene.lclient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.queries.TermsQuery;
+import org.apache.lucene.search.DocValuesTermsQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+
+// collects the distinct from-side keys, then picks how the to side matches them:
+// a few keys are looked up in the to-side terms dictionary, many keys are matched against to-side doc values ordinals.
+final class JoinPlanner {
+
+  private JoinPlanner() { }
+
+  static Query plan(IndexSearcher fromSearcher, Query fromQuery, String fromField, String toField,
+                    boolean toHasSortedDocValues, int hashJoinMaxKeys) throws IOException {
+    return plan(keys(fromSearcher, fromQuery, fromField), toField, toHasSortedDocValues, hashJoinMaxKeys);
+  }
+
+  static Query plan(List<BytesRef> keys, String toField, boolean toHasSortedDocValues, int hashJoinMaxKeys) {
+    if ((keys.size() <= hashJoinMaxKeys) || !toHasSortedDocValues) {
+      return new TermsQuery(toField, keys);
+    }
+    return new DocValuesTermsQuery(toField, keys);
+  }
+
+  // string keys are written as sorted doc values, which read as single-valued sets.
+  static List<BytesRef> keys(IndexSearcher fromSearcher, Query fromQuery, String fromField) throws IOException {
+    BytesRefHash hash = new BytesRefHash();
+    fromSearcher.search(fromQuery, new SimpleCollector() {
+      private SortedSetDocValues values;
+
+      @Override
+      protected void doSetNextReader(LeafReaderContext context) throws IOException {
+        values = DocValues.getSortedSet(context.reader(), fromField);
+      }
+
+      @Override
+      public void collect(int doc) {
+        values.setDocument(doc);
+        for (long ord = values.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = values.nextOrd()) {
+          hash.add(values.lookupOrd(ord));
+        }
+      }
+
+      @Override
+      public boolean needsScores() {
+        return false;
+      }
+    });
+    List<BytesRef> keys = new ArrayList<>(hash.size());
+    for (int i = 0; i < hash.size(); i++) {
+      keys.add(hash.get(i, new BytesRef()));
+    }
+    return keys;
+  }
+
+}
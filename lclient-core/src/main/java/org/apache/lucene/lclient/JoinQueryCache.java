@@ -0,0 +1,139 @@
+package org.apache.lucene.lclient;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.join.ScoreMode;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Maps;
+
+final class JoinQueryCache {
+
+  private final Cache<Key,Joined> cache;
+  private final Map<String,Long> versions = Maps.newConcurrentMap();
+
+  // a join query holds every collected key, so the cache is bounded by the keys it holds rather than by its entries.
+  JoinQueryCache(long maximumTerms) {
+    this.cache = CacheBuilder.newBuilder()
+      .maximumWeight(maximumTerms)
+      .weigher((Key key, Joined joined) -> joined.terms)
+      .recordStats()
+      .build();
+  }
+
+  static final class Joined {
+
+    private final Query query;
+    private final int terms;
+
+    // terms is the number of join keys, or an upper bound of it when the query doesn't expose them.
+    Joined(Query query, long terms) {
+      this.query = query;
+      this.terms = (int) Math.max(1, Math.min(Integer.MAX_VALUE, terms));
+    }
+
+  }
+
+  // entries are keyed by the from-side reader version, a newer version drops the older entries of that collection.
+  // a searcher still holding an older version gets a fresh join query that is not cached. the plan also depends on
+  // the to side's field types, so the to collection is part of the key.
+  Query get(String fromCollection, long fromVersion, String toCollection, String fromField, String toField, String fromQuery,
+            String fromFilterQuery, ScoreMode scoreMode, Callable<Joined> joiner) throws IOException {
+    Long previous = versions.get(fromCollection);
+    long latest = versions.merge(fromCollection, fromVersion, Math::max);
+    if (fromVersion < latest) {
+      return call(joiner);
+    }
+    // the scan only runs when this call advanced the version
+    if ((previous == null) || (previous < fromVersion)) {
+      invalidateBefore(fromCollection, fromVersion);
+    }
+    Key key = new Key(fromCollection, fromVersion, toCollection, fromField, toField, fromQuery, fromFilterQuery, scoreMode);
+    try {
+      return cache.get(key, joiner).query;
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), IOException.class);
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  CacheStats stats() {
+    return cache.stats();
+  }
+
+  long size() {
+    return cache.size();
+  }
+
+  void invalidateAll() {
+    cache.invalidateAll();
+    versions.clear();
+  }
+
+  private void invalidateBefore(String fromCollection, long fromVersion) {
+    cache.asMap().keySet().removeIf(key -> key.fromCollection.equals(fromCollection) && key.fromVersion < fromVersion);
+  }
+
+  private static Query call(Callable<Joined> joiner) throws IOException {
+    try {
+      return joiner.call().query;
+    } catch (Exception e) {
+      Throwables.propagateIfPossible(e, IOException.class);
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private static final class Key {
+
+    private final String fromCollection;
+    private final long fromVersion;
+    private final String toCollection;
+    private final String fromField;
+    private final String toField;
+    private final String fromQuery;
+    private final String fromFilterQuery;
+    private final ScoreMode scoreMode;
+
+    Key(String fromCollection, long fromVersion, String toCollection, String fromField, String toField, String fromQuery,
+        String fromFilterQuery, ScoreMode scoreMode) {
+      this.fromCollection = fromCollection;
+      this.fromVersion = fromVersion;
+      this.toCollection = toCollection;
+      this.fromField = fromField;
+      this.toField = toField;
+      this.fromQuery = fromQuery;
+      this.fromFilterQuery = fromFilterQuery;
+      this.scoreMode = scoreMode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof Key)) return false;
+      Key other = (Key) obj;
+      return fromCollection.equals(other.fromCollection)
+          && fromVersion == other.fromVersion
+          && toCollection.equals(other.toCollection)
+          && fromField.equals(other.fromField)
+          && toField.equals(other.toField)
+          && Objects.equals(fromQuery, other.fromQuery)
+          && Objects.equals(fromFilterQuery, other.fromFilterQuery)
+          && scoreMode == other.scoreMode;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(fromCollection, fromVersion, toCollection, fromField, toField, fromQuery, fromFilterQuery, scoreMode);
+    }
+
+  }
+
+}
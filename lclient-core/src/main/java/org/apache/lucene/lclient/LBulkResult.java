@@ -0,0 +1,56 @@
+package org.apache.lucene.lclient;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+
+public final class LBulkResult {
+
+  private final long updated;
+  private final int failed;
+  private final List<ImmutablePair<Long,Exception>> errors;
+  private final long elapsedNanos;
+  private final long generation;
+
+  LBulkResult(long updated, int failed, List<ImmutablePair<Long,Exception>> errors, long elapsedNanos, long generation) {
+    this.updated = updated;
+    this.failed = failed;
+    this.errors = errors;
+    this.elapsedNanos = elapsedNanos;
+    this.generation = generation;
+  }
+
+  public long updated() {
+    return updated;
+  }
+
+  public int failed() {
+    return failed;
+  }
+
+  // position of the failed document in the input, and why it failed; in input order.
+  // at most LCommand.BULK_MAX_ERRORS of them are kept, failed() counts them all.
+  public List<ImmutablePair<Long,Exception>> errors() {
+    return errors;
+  }
+
+  public long elapsedMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+  }
+
+  public double docsPerSecond() {
+    return (elapsedNanos == 0) ? 0d : updated * 1e9 / elapsedNanos;
+  }
+
+  // for waitForGeneration, the highest generation of the written documents.
+  public long generation() {
+    return generation;
+  }
+
+  @Override
+  public String toString() {
+    return "LBulkResult(updated=" + updated + ", failed=" + failed() + ", elapsedMillis=" + elapsedMillis() + ", docsPerSecond=" + docsPerSecond() + ")";
+  }
+
+}
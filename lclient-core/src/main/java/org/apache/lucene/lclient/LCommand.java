@@ -1,50 +1,68 @@
 package org.apache.lucene.lclient;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.ImmutableTriple;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TrackingIndexWriter;
 import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
 import org.apache.lucene.queryparser.flexible.standard.StandardQueryParser;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
-import org.apache.lucene.search.CachingWrapperQuery;
-import org.apache.lucene.search.Filter;
-import org.apache.lucene.search.FilteredQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.QueryWrapperFilter;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.grouping.GroupDocs;
 import org.apache.lucene.search.grouping.GroupingSearch;
 import org.apache.lucene.search.grouping.TopGroups;
+import org.apache.lucene.search.join.BitDocIdSetCachingWrapperFilter;
+import org.apache.lucene.search.join.BitDocIdSetFilter;
 import org.apache.lucene.search.join.JoinUtil;
 import org.apache.lucene.search.join.ScoreMode;
-import org.apache.lucene.search.vectorhighlight.FastVectorHighlighter;
-import org.apache.lucene.search.vectorhighlight.FieldQuery;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.uninverting.UninvertingReader;
+import org.apache.lucene.search.join.ToChildBlockJoinQuery;
+import org.apache.lucene.search.join.ToParentBlockJoinQuery;
 import org.apache.lucene.util.BytesRef;
 
-import com.google.common.base.Joiner;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 public class LCommand {
@@ -53,74 +71,380 @@ public class LCommand {
   private String name;
   private LSchema schema;
 
-  private Directory directory;
   private IndexWriter writer; 
-  private DirectoryReader reader;
-  private IndexSearcher searcher;
-
-  private Map<String,UninvertingReader.Type> mapping = Maps.newHashMap();
+  private TrackingIndexWriter trackingWriter;
+  private WriteAheadLog writeAheadLog;
+  private SearcherManager searcherManager;
+  private ControlledRealTimeReopenThread<IndexSearcher> reopenThread;
+  private volatile ParallelSearch parallelSearch;
 
   public static final int MAX_LIMIT = 100_0000;
+  public static final int PAGE_SIZE = 1000;
+  public static final int GROUPING_CACHE_MAX_DOCS = 10_0000;
+  public static final int HASH_JOIN_MAX_KEYS = 1024;
+  public static final int BULK_BATCH_SIZE = 1000;
+  public static final int BULK_THREADS = Runtime.getRuntime().availableProcessors();
+  public static final int BULK_MAX_ERRORS = 1000;
+
+  public static final String BLOCK_ROOT_FIELD = "_root_";
+  public static final String BLOCK_TYPE_FIELD = "_block_";
+  private static final String BLOCK_PARENT = "parent";
+  private static final String BLOCK_CHILD = "child";
+
+  private final BitDocIdSetFilter blockParents =
+    new BitDocIdSetCachingWrapperFilter(new QueryWrapperFilter(new TermQuery(new Term(BLOCK_TYPE_FIELD, BLOCK_PARENT))));
 
   public LCommand(LConnection connection, String collectionName, LSchema schema) throws IOException {
     this.connection = Preconditions.checkNotNull(connection);
     this.name = Preconditions.checkNotNull(collectionName);
     this.schema = Preconditions.checkNotNull(schema);
 
-    directory = connection.getDirectory(name);
     writer = connection.getIndexWriter(name, schema);
+    trackingWriter = connection.getTrackingIndexWriter(name, schema);
+    writeAheadLog = connection.getWriteAheadLog(name, schema);
 
-    mapping.put(schema.getUniqueKey(), UninvertingReader.Type.SORTED);
-
-    fresh();
+    DirectoryReader directoryReader = DirectoryReader.open(writer, /* applyAllDeletes */ true);
+    searcherManager = new SearcherManager(UniqueKeyReader.wrap(directoryReader, schema), null);
+    connection.putSearcherManager(name, searcherManager);
 
     BooleanQuery.setMaxClauseCount(MAX_LIMIT);
+
+    if (writeAheadLog != null) {
+      recover();
+    }
   }
 
+  // changes logged but not committed before the last close are applied again and committed.
+  private void recover() throws IOException {
+    int replayed = writeAheadLog.replay(schema, new WriteAheadLog.Replayer() {
+      @Override
+      public void update(LDocument document) throws IOException {
+        writeUpdate(document);
+      }
+      @Override
+      public void insert(LDocument document) throws IOException {
+        writeInsert(document);
+      }
+      @Override
+      public void updateBlock(LDocument parent, List<LDocument> children) throws IOException {
+        writeBlock(parent, children);
+      }
+      @Override
+      public void remove(String id) throws IOException {
+        writeRemove(id);
+      }
+      @Override
+      public void removeByQuery(String query) throws IOException {
+        writeRemoveByQuery(query);
+      }
+    });
+    if (replayed > 0) {
+      commit();
+      refresh();
+    }
+  }
+
+  // durable once this returns; visible to searches only after the next refresh.
   public void commit() throws IOException {
-    writer.commit();
-    fresh();
+    try {
+      commitAsync().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(e.getMessage());
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), IOException.class);
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  // completes when a commit covering every change made before this call is durable.
+  public CompletableFuture<Void> commitAsync() {
+    return connection.getGroupCommitter().commit(writer, writeAheadLog);
   }
 
   public void forceMerge() throws IOException {
     writer.forceMerge(1);
-    fresh();
+    refresh();
   }
 
-  private void fresh() throws IOException {
-    DirectoryReader directoryReader = DirectoryReader.open(directory);
-    reader = UninvertingReader.wrap(directoryReader, mapping);
-    searcher = new IndexSearcher(reader);
-    connection.putIndexReader(name, reader);
+  // rewrites only the segments written before the unique key had doc values, after that no reader is uninverted.
+  public void migrateUniqueKey() throws IOException {
+    writer.forceMerge(Integer.MAX_VALUE);
+    refresh();
   }
 
   public void refresh() throws IOException {
-    DirectoryReader directoryReader = DirectoryReader.openIfChanged(reader, writer, true);
-    if (directoryReader != null) {
-      reader = UninvertingReader.wrap(directoryReader, mapping);
-      searcher = new IndexSearcher(reader);
-      connection.putIndexReader(name, reader);
+    searcherManager.maybeRefreshBlocking();
+  }
+
+  public synchronized void startReopenThread(double targetMaxStaleSec, double targetMinStaleSec) throws IOException {
+    Preconditions.checkState(reopenThread == null, "reopen thread already started");
+    reopenThread = new ControlledRealTimeReopenThread<>(trackingWriter,
+                                                        searcherManager, targetMaxStaleSec, targetMinStaleSec);
+    reopenThread.setName("LCommand-reopen-" + name);
+    reopenThread.setDaemon(true);
+    reopenThread.start();
+    connection.putReopenThread(name, reopenThread);
+  }
+
+  public synchronized void stopReopenThread() {
+    if (reopenThread != null) {
+      reopenThread.close();
+      connection.removeReopenThread(name, reopenThread);
+      reopenThread = null;
     }
   }
 
-  public void update(LDocument document) throws IOException {
-    writer = connection.getIndexWriter(name, schema);
-    writer.updateDocument(document.uniqueKey(), document.document());
+  public void waitForGeneration(long generation) throws IOException {
+    ControlledRealTimeReopenThread<IndexSearcher> thread = reopenThread;
+    if (thread == null) {
+      refresh();
+      return;
+    }
+    try {
+      thread.waitForGeneration(generation);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(e.getMessage());
+    }
   }
 
-  public void remove(String id) throws IOException {
-    writer = connection.getIndexWriter(name, schema);
-    writer.deleteDocuments(new Term(schema.getUniqueKey(), id));
+  public IndexSearcher acquire() throws IOException {
+    return searcherManager.acquire();
   }
 
-  public void removeByQuery(String query) throws IOException {
-    writer = connection.getIndexWriter(name, schema);
-    writer.deleteDocuments(query(query));
+  public void release(IndexSearcher searcher) throws IOException {
+    searcherManager.release(searcher);
+  }
+
+  public void setSearchExecutor(ExecutorService executor, int minDocsPerSlice) {
+    parallelSearch = (executor == null) ? null : new ParallelSearch(executor, minDocsPerSlice);
+  }
+
+  // parallel is chosen per query, a latency-critical query searches on the caller's thread.
+  private IndexSearcher executing(IndexSearcher searcher, boolean parallel) {
+    if (!parallel) {
+      return searcher;
+    }
+    ParallelSearch search = (parallelSearch != null) ? parallelSearch : connection.getParallelSearch();
+    return (search == null) ? searcher : search.wrap(searcher);
+  }
+
+  private ExecutorService executor(boolean parallel) {
+    if (!parallel) {
+      return null;
+    }
+    ParallelSearch search = (parallelSearch != null) ? parallelSearch : connection.getParallelSearch();
+    return (search == null) ? null : search.executor();
+  }
+
+  private void releaseQuietly(IndexSearcher searcher) {
+    try {
+      release(searcher);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // the searcher is released when a terminal operation returns, or when an iterator is exhausted or the stream closed.
+  private <T> Stream<T> releasing(IndexSearcher searcher, Stream<T> stream) {
+    return ReleasingStream.of(ReleasingSpliterator.stream(stream, () -> releaseQuietly(searcher)));
+  }
+
+  public long update(LDocument document) throws IOException {
+    if (writeAheadLog != null) {
+      return writeAheadLog.update(document, () -> writeUpdate(document));
+    }
+    return writeUpdate(document);
+  }
+
+  private long writeUpdate(LDocument document) throws IOException {
+    return trackingWriter.updateDocument(document.uniqueKey(), document.document());
+  }
+
+  // adds without deleting an older document of the same key, for keys that are unique by construction.
+  public long insert(LDocument document) throws IOException {
+    if (writeAheadLog != null) {
+      return writeAheadLog.insert(document, () -> writeInsert(document));
+    }
+    return writeInsert(document);
+  }
+
+  private long writeInsert(LDocument document) throws IOException {
+    return trackingWriter.addDocument(document.document());
+  }
+
+  public LBulkResult bulkUpdate(Stream<LDocument> documents) throws IOException {
+    return bulkUpdate(documents, BULK_THREADS, BULK_BATCH_SIZE, LRefreshPolicy.NONE);
+  }
+
+  public LBulkResult bulkUpdate(Stream<LDocument> documents, int threads, int batchSize, LRefreshPolicy refreshPolicy) throws IOException {
+    try (Stream<LDocument> docs = documents) {
+      return bulkUpdate(docs.iterator(), threads, batchSize, refreshPolicy);
+    }
+  }
+
+  public LBulkResult bulkUpdate(Iterator<LDocument> documents) throws IOException {
+    return bulkUpdate(documents, BULK_THREADS, BULK_BATCH_SIZE, LRefreshPolicy.NONE);
+  }
+
+  // a failed document is reported in the result and doesn't stop the others, unless the writer itself failed or closed. documents are written on other
+  // threads, so a template from LDocument.template() is rejected. an append-only collection is bulk inserted.
+  public LBulkResult bulkUpdate(Iterator<LDocument> documents, int threads, int batchSize, LRefreshPolicy refreshPolicy) throws IOException {
+    return bulk(documents, threads, batchSize, refreshPolicy, schema.isAppendOnly() ? this::insert : this::update);
+  }
+
+  public LBulkResult bulkInsert(Stream<LDocument> documents) throws IOException {
+    return bulkInsert(documents, BULK_THREADS, BULK_BATCH_SIZE, LRefreshPolicy.NONE);
+  }
+
+  public LBulkResult bulkInsert(Stream<LDocument> documents, int threads, int batchSize, LRefreshPolicy refreshPolicy) throws IOException {
+    try (Stream<LDocument> docs = documents) {
+      return bulkInsert(docs.iterator(), threads, batchSize, refreshPolicy);
+    }
+  }
+
+  public LBulkResult bulkInsert(Iterator<LDocument> documents) throws IOException {
+    return bulkInsert(documents, BULK_THREADS, BULK_BATCH_SIZE, LRefreshPolicy.NONE);
+  }
+
+  public LBulkResult bulkInsert(Iterator<LDocument> documents, int threads, int batchSize, LRefreshPolicy refreshPolicy) throws IOException {
+    return bulk(documents, threads, batchSize, refreshPolicy, this::insert);
+  }
+
+  private LBulkResult bulk(Iterator<LDocument> documents, int threads, int batchSize, LRefreshPolicy refreshPolicy, BulkIndexer.DocumentWriter writer) throws IOException {
+    BulkIndexer indexer = new BulkIndexer(document -> {
+      Preconditions.checkArgument(!document.isTemplate(), "a template can't be bulk written");
+      return writer.write(document);
+    }, this.writer::getTragicException, threads, batchSize, BULK_MAX_ERRORS, "LCommand-bulk-" + name);
+    LBulkResult result = indexer.run(documents);
+    refresh(refreshPolicy);
+    return result;
+  }
+
+  private void refresh(LRefreshPolicy refreshPolicy) throws IOException {
+    if (refreshPolicy == LRefreshPolicy.COMMIT) {
+      commit();
+    }
+    if (refreshPolicy != LRefreshPolicy.NONE) {
+      refresh();
+    }
+  }
+
+  // children are written right before their parent, and every document of the block carries the parent's key,
+  // so a block is replaced as a whole. a block must be replaced through updateBlock, not update.
+  public long updateBlock(LDocument parent, List<LDocument> children) throws IOException {
+    Preconditions.checkNotNull(parent.uniqueKey(), "parent has no unique key");
+    if (writeAheadLog != null) {
+      return writeAheadLog.updateBlock(parent, children, () -> writeBlock(parent, children));
+    }
+    return writeBlock(parent, children);
+  }
+
+  private long writeBlock(LDocument parent, List<LDocument> children) throws IOException {
+    Term parentKey = Preconditions.checkNotNull(parent.uniqueKey(), "parent has no unique key");
+    List<Document> block = new ArrayList<>(children.size() + 1);
+    for (LDocument child : children) {
+      block.add(blockDocument(child, parentKey.text(), BLOCK_CHILD));
+    }
+    block.add(blockDocument(parent, parentKey.text(), BLOCK_PARENT));
+    return trackingWriter.updateDocuments(new Term(BLOCK_ROOT_FIELD, parentKey.text()), block);
+  }
+
+  private Document blockDocument(LDocument document, String root, String type) {
+    Document doc = new Document();
+    for (IndexableField field : document.document()) {
+      doc.add(field);
+    }
+    doc.add(new StringField(BLOCK_ROOT_FIELD, root, Field.Store.NO));
+    doc.add(new StringField(BLOCK_TYPE_FIELD, type, Field.Store.NO));
+    return doc;
+  }
+
+  // removing a block parent removes its children too.
+  public long remove(String id) throws IOException {
+    if (writeAheadLog != null) {
+      return writeAheadLog.remove(id, () -> writeRemove(id));
+    }
+    return writeRemove(id);
+  }
+
+  private long writeRemove(String id) throws IOException {
+    return trackingWriter.deleteDocuments(new Term(schema.getUniqueKey(), id), new Term(BLOCK_ROOT_FIELD, id));
+  }
+
+  // the query is parsed before it is logged, so a query that doesn't parse is rejected and never replayed.
+  public long removeByQuery(String query) throws IOException {
+    Query parsed = query(query);
+    Preconditions.checkArgument(parsed != null, "query doesn't parse: %s", query);
+    if (writeAheadLog != null) {
+      return writeAheadLog.removeByQuery(query, () -> trackingWriter.deleteDocuments(parsed));
+    }
+    return trackingWriter.deleteDocuments(parsed);
+  }
+
+  // a logged query that doesn't parse removes nothing, rather than keeping the collection from opening.
+  private long writeRemoveByQuery(String query) throws IOException {
+    Query parsed = query(query);
+    return (parsed != null) ? trackingWriter.deleteDocuments(parsed) : trackingWriter.getGeneration();
   }
 
   public int count(String query) throws IOException {
-    TopFieldDocs results = search(filteredQuery(query, null), null, null);
-    return results.totalHits;
+    return count(query, null);
+  }
+
+  public int count(String query, String filterQuery) throws IOException {
+    return count(query, filterQuery, true);
+  }
+
+  int count(String query, String filterQuery, boolean parallel) throws IOException {
+    IndexSearcher searcher = acquire();
+    try {
+      return HitCounts.count(executing(searcher, parallel), filteredQuery(query, filterQuery));
+    } finally {
+      release(searcher);
+    }
+  }
+
+  public boolean exists(String query) throws IOException {
+    return exists(query, null);
+  }
+
+  public boolean exists(String query, String filterQuery) throws IOException {
+    IndexSearcher searcher = acquire();
+    try {
+      return HitCounts.exists(searcher, filteredQuery(query, filterQuery));
+    } finally {
+      release(searcher);
+    }
+  }
+
+  public Map<String,LStats> aggregate(String query, String filterQuery, String fields) throws IOException {
+    return aggregate(query, filterQuery, fields, true);
+  }
+
+  Map<String,LStats> aggregate(String query, String filterQuery, String fields, boolean parallel) throws IOException {
+    String[] fieldArray = Splitter.on(",").trimResults().omitEmptyStrings().splitToList(fields).toArray(new String[0]);
+    IndexSearcher searcher = acquire();
+    try {
+      return executing(searcher, parallel).search(filteredQuery(query, filterQuery), NumericAggregator.manager(schema, fieldArray));
+    } finally {
+      release(searcher);
+    }
+  }
+
+  public Map<String,List<ImmutablePair<String,Integer>>> facets(String query, String filterQuery, String fields, int topN) throws IOException {
+    return facets(query, filterQuery, fields, topN, true);
+  }
+
+  Map<String,List<ImmutablePair<String,Integer>>> facets(String query, String filterQuery, String fields, int topN, boolean parallel) throws IOException {
+    String[] fieldArray = Splitter.on(",").trimResults().omitEmptyStrings().splitToList(fields).toArray(new String[0]);
+    IndexSearcher searcher = acquire();
+    try {
+      return executing(searcher, parallel).search(filteredQuery(query, filterQuery), FacetCounter.manager(schema, fieldArray, topN));
+    } finally {
+      release(searcher);
+    }
   }
 
   List<Document> find(String query) throws IOException {
@@ -137,40 +461,192 @@ public class LCommand {
   }
 
   List<Document> find(String query, String filterQuery, Integer limit, String sort, String fields) throws IOException {
-    return documentStream(query, filterQuery, limit, sort, fields)
+    return find(query, filterQuery, limit, sort, fields, null);
+  }
+
+  List<Document> find(String query, String filterQuery, Integer limit, String sort, String fields, LScoreMode scoreMode) throws IOException {
+    return find(query, filterQuery, limit, sort, fields, scoreMode, true);
+  }
+
+  List<Document> find(String query, String filterQuery, Integer limit, String sort, String fields, LScoreMode scoreMode, boolean parallel) throws IOException {
+    return documentStream(query, filterQuery, limit, sort, fields, scoreMode, parallel)
            .collect(Collectors.toCollection(() -> new ArrayList<>()));
   }
 
   public Stream<Document> documentStream(String query, String filterQuery, Integer limit, String sort, String fields) throws IOException {
-    TopFieldDocs results = search(filteredQuery(query, filterQuery), limit, sort);
-    return Arrays.stream(results.scoreDocs).map(scoreDoc -> getDoc(scoreDoc, fields));
+    return documentStream(query, filterQuery, limit, sort, fields, null);
+  }
+
+  public Stream<Document> documentStream(String query, String filterQuery, Integer limit, String sort, String fields, LScoreMode scoreMode) throws IOException {
+    return documentStream(query, filterQuery, limit, sort, fields, scoreMode, true);
+  }
+
+  Stream<Document> documentStream(String query, String filterQuery, Integer limit, String sort, String fields, LScoreMode scoreMode, boolean parallel) throws IOException {
+    LScoreMode mode = scoreMode(scoreMode);
+    IndexSearcher searcher = acquire();
+    try {
+      return releasing(searcher,
+               fetcher(searcher, fields).stream(
+                 scoreDocStream(searcher, filteredQuery(query, filterQuery), limit, sort, mode, parallel),
+                 PAGE_SIZE, (scoreDoc, doc) -> doc));
+    } catch (IOException | RuntimeException e) {
+      release(searcher);
+      throw e;
+    }
   }
 
   public Stream<ImmutablePair<ScoreDoc,Document>> documentPairStream(String query, String filterQuery, Integer limit, String sort, String fields) throws IOException {
-    TopFieldDocs results = search(filteredQuery(query, filterQuery), limit, sort);
-    return Arrays.stream(results.scoreDocs)
-           .map(scoreDoc -> ImmutablePair.of(scoreDoc, getDoc(scoreDoc, fields)));
+    return documentPairStream(query, filterQuery, limit, sort, fields, null);
+  }
+
+  public Stream<ImmutablePair<ScoreDoc,Document>> documentPairStream(String query, String filterQuery, Integer limit, String sort, String fields, LScoreMode scoreMode) throws IOException {
+    return documentPairStream(query, filterQuery, limit, sort, fields, scoreMode, true);
+  }
+
+  Stream<ImmutablePair<ScoreDoc,Document>> documentPairStream(String query, String filterQuery, Integer limit, String sort, String fields, LScoreMode scoreMode, boolean parallel) throws IOException {
+    LScoreMode mode = scoreMode(scoreMode);
+    IndexSearcher searcher = acquire();
+    try {
+      return releasing(searcher,
+               fetcher(searcher, fields).stream(
+                 scoreDocStream(searcher, filteredQuery(query, filterQuery), limit, sort, mode, parallel),
+                 PAGE_SIZE, ImmutablePair::of));
+    } catch (IOException | RuntimeException e) {
+      release(searcher);
+      throw e;
+    }
+  }
+
+  // fragments of field for each hit, joined by " ... "; the highlighted query is query, or filterQuery when query is null.
+  public Stream<ImmutablePair<Document,String>> highlightedStream(String query, String filterQuery, Integer limit, String sort, String fields, LScoreMode scoreMode, String field, int fragSize, int maxFragments) throws IOException {
+    return highlightedStream(query, filterQuery, limit, sort, fields, scoreMode, field, fragSize, maxFragments, true);
+  }
+
+  Stream<ImmutablePair<Document,String>> highlightedStream(String query, String filterQuery, Integer limit, String sort, String fields, LScoreMode scoreMode, String field, int fragSize, int maxFragments, boolean parallel) throws IOException {
+    LScoreMode mode = scoreMode(scoreMode);
+    IndexSearcher searcher = acquire();
+    try {
+      PageHighlighter highlighter = new PageHighlighter(schema, query((query != null) ? query : filterQuery), searcher, field, fragSize, maxFragments, executor(parallel));
+      return releasing(searcher,
+               fetcher(searcher, fields).batchStream(
+                 scoreDocStream(searcher, filteredQuery(query, filterQuery), limit, sort, mode, parallel),
+                 PAGE_SIZE, (batch, docs) -> {
+                   String[] fragments = highlighter.highlight(batch);
+                   return IntStream.range(0, docs.length)
+                            .mapToObj(i -> ImmutablePair.of(docs[i], fragments[i]))
+                            .collect(Collectors.toList());
+                 }));
+    } catch (IOException | RuntimeException e) {
+      release(searcher);
+      throw e;
+    }
   }
 
   public Stream<ImmutableTriple<ScoreDoc,Document,ScoreDoc>> documentTripleStream(ScoreDoc lastBottom, String query, String filterQuery, Integer numHits, String sort, String fields) throws IOException {
-    TopFieldDocs results = searchAfter(lastBottom, filteredQuery(query, filterQuery), numHits, sort);
-    final ScoreDoc resultBottom =
-      (results.scoreDocs.length > 0) ?
-        results.scoreDocs[results.scoreDocs.length - 1] : null;
-    return Arrays.stream(results.scoreDocs)
-           .map(scoreDoc -> ImmutableTriple.of(scoreDoc, getDoc(scoreDoc, fields), resultBottom));
+    IndexSearcher searcher = acquire();
+    try {
+      TopFieldDocs results = searchAfter(executing(searcher, true), lastBottom, filteredQuery(query, filterQuery), numHits, sort);
+      final ScoreDoc resultBottom =
+        (results.scoreDocs.length > 0) ?
+          results.scoreDocs[results.scoreDocs.length - 1] : null;
+      Document[] docs = fetcher(searcher, fields).fetch(results.scoreDocs);
+      return releasing(searcher,
+               IntStream.range(0, docs.length)
+               .mapToObj(i -> ImmutableTriple.of(results.scoreDocs[i], docs[i], resultBottom)));
+    } catch (IOException | RuntimeException e) {
+      release(searcher);
+      throw e;
+    }
+  }
+
+  // no ranking and no limit, the stream splits per segment for parallel consumers.
+  public Stream<Document> exportStream(String query, String filterQuery, String fields) throws IOException {
+    IndexSearcher searcher = acquire();
+    try {
+      ExportSpliterator spliterator =
+        ExportSpliterator.open(searcher, filteredQuery(query, filterQuery), () -> fetcher(searcher, fields));
+      return releasing(searcher, StreamSupport.stream(spliterator, /* parallel */ false));
+    } catch (IOException | RuntimeException e) {
+      release(searcher);
+      throw e;
+    }
   }
 
   List<Document> JoinFrom(String query, String filterQuery, Integer limit, String sort, String fields, LCommand fromCommand, String fromField, String toField, String fromQuery, String fromFilterQuery) throws IOException {
-    return joinStream(query, filterQuery, limit, sort, fields, fromCommand, fromField, toField, fromQuery, fromFilterQuery)
+    return JoinFrom(query, filterQuery, limit, sort, fields, fromCommand, fromField, toField, fromQuery, fromFilterQuery, ScoreMode.None, null, true);
+  }
+
+  List<Document> JoinFrom(String query, String filterQuery, Integer limit, String sort, String fields, LCommand fromCommand, String fromField, String toField, String fromQuery, String fromFilterQuery, ScoreMode joinScoreMode, LScoreMode scoreMode, boolean parallel) throws IOException {
+    return joinStream(query, filterQuery, limit, sort, fields, fromCommand, fromField, toField, fromQuery, fromFilterQuery, joinScoreMode, scoreMode, parallel)
            .collect(Collectors.toCollection(() -> new ArrayList<>()));
   }
 
   public Stream<Document> joinStream(String query, String filterQuery, Integer limit, String sort, String fields, LCommand fromCommand, String fromField, String toField, String fromQuery, String fromFilterQuery) throws IOException {
-    Query joinQuery = joinQuery(fromCommand, fromField, toField, fromQuery, fromFilterQuery);
-    Filter joinFilter = new QueryWrapperFilter(joinQuery);
-    TopFieldDocs results = search(filteredQuery(query, filterQuery, joinFilter), limit, sort);
-    return Arrays.stream(results.scoreDocs).map(scoreDoc -> getDoc(scoreDoc, fields));
+    return joinStream(query, filterQuery, limit, sort, fields, fromCommand, fromField, toField, fromQuery, fromFilterQuery, ScoreMode.None, null);
+  }
+
+  public Stream<Document> joinStream(String query, String filterQuery, Integer limit, String sort, String fields, LCommand fromCommand, String fromField, String toField, String fromQuery, String fromFilterQuery, LScoreMode scoreMode) throws IOException {
+    return joinStream(query, filterQuery, limit, sort, fields, fromCommand, fromField, toField, fromQuery, fromFilterQuery, ScoreMode.None, scoreMode);
+  }
+
+  public Stream<Document> joinStream(String query, String filterQuery, Integer limit, String sort, String fields, LCommand fromCommand, String fromField, String toField, String fromQuery, String fromFilterQuery, ScoreMode joinScoreMode, LScoreMode scoreMode) throws IOException {
+    return joinStream(query, filterQuery, limit, sort, fields, fromCommand, fromField, toField, fromQuery, fromFilterQuery, joinScoreMode, scoreMode, true);
+  }
+
+  Stream<Document> joinStream(String query, String filterQuery, Integer limit, String sort, String fields, LCommand fromCommand, String fromField, String toField, String fromQuery, String fromFilterQuery, ScoreMode joinScoreMode, LScoreMode scoreMode, boolean parallel) throws IOException {
+    return joinStream(query, filterQuery, limit, sort, fields, fromCommand, fromField, toField, fromQuery, fromFilterQuery, joinScoreMode, scoreMode, parallel, (scoreDoc, doc) -> doc);
+  }
+
+  public Stream<ImmutablePair<ScoreDoc,Document>> joinPairStream(String query, String filterQuery, Integer limit, String sort, String fields, LCommand fromCommand, String fromField, String toField, String fromQuery, String fromFilterQuery, ScoreMode joinScoreMode, LScoreMode scoreMode) throws IOException {
+    return joinPairStream(query, filterQuery, limit, sort, fields, fromCommand, fromField, toField, fromQuery, fromFilterQuery, joinScoreMode, scoreMode, true);
+  }
+
+  Stream<ImmutablePair<ScoreDoc,Document>> joinPairStream(String query, String filterQuery, Integer limit, String sort, String fields, LCommand fromCommand, String fromField, String toField, String fromQuery, String fromFilterQuery, ScoreMode joinScoreMode, LScoreMode scoreMode, boolean parallel) throws IOException {
+    return joinStream(query, filterQuery, limit, sort, fields, fromCommand, fromField, toField, fromQuery, fromFilterQuery, joinScoreMode, scoreMode, parallel, ImmutablePair::of);
+  }
+
+  private <T> Stream<T> joinStream(String query, String filterQuery, Integer limit, String sort, String fields, LCommand fromCommand, String fromField, String toField, String fromQuery, String fromFilterQuery, ScoreMode joinScoreMode, LScoreMode scoreMode, boolean parallel, BiFunction<ScoreDoc,Document,T> mapper) throws IOException {
+    Query joinQuery = joinQuery(fromCommand, fromField, toField, fromQuery, fromFilterQuery, joinScoreMode, parallel);
+    return joinedStream(query, filterQuery, limit, sort, fields, joinQuery, joinScoreMode, scoreMode, parallel, mapper);
+  }
+
+  List<Document> blockJoin(String query, String filterQuery, Integer limit, String sort, String fields, boolean fromChildren, String fromQuery, String fromFilterQuery, ScoreMode joinScoreMode, LScoreMode scoreMode, boolean parallel) throws IOException {
+    return blockJoinStream(query, filterQuery, limit, sort, fields, fromChildren, fromQuery, fromFilterQuery, joinScoreMode, scoreMode, parallel)
+           .collect(Collectors.toCollection(() -> new ArrayList<>()));
+  }
+
+  // fromChildren returns the parents of matching children, otherwise the children of matching parents.
+  public Stream<Document> blockJoinStream(String query, String filterQuery, Integer limit, String sort, String fields, boolean fromChildren, String fromQuery, String fromFilterQuery, ScoreMode joinScoreMode, LScoreMode scoreMode) throws IOException {
+    return blockJoinStream(query, filterQuery, limit, sort, fields, fromChildren, fromQuery, fromFilterQuery, joinScoreMode, scoreMode, true);
+  }
+
+  Stream<Document> blockJoinStream(String query, String filterQuery, Integer limit, String sort, String fields, boolean fromChildren, String fromQuery, String fromFilterQuery, ScoreMode joinScoreMode, LScoreMode scoreMode, boolean parallel) throws IOException {
+    Query joinQuery = blockJoinQuery(fromChildren, fromQuery, fromFilterQuery, joinScoreMode);
+    return joinedStream(query, filterQuery, limit, sort, fields, joinQuery, joinScoreMode, scoreMode, parallel, (scoreDoc, doc) -> doc);
+  }
+
+  public Stream<ImmutablePair<ScoreDoc,Document>> blockJoinPairStream(String query, String filterQuery, Integer limit, String sort, String fields, boolean fromChildren, String fromQuery, String fromFilterQuery, ScoreMode joinScoreMode, LScoreMode scoreMode) throws IOException {
+    return blockJoinPairStream(query, filterQuery, limit, sort, fields, fromChildren, fromQuery, fromFilterQuery, joinScoreMode, scoreMode, true);
+  }
+
+  Stream<ImmutablePair<ScoreDoc,Document>> blockJoinPairStream(String query, String filterQuery, Integer limit, String sort, String fields, boolean fromChildren, String fromQuery, String fromFilterQuery, ScoreMode joinScoreMode, LScoreMode scoreMode, boolean parallel) throws IOException {
+    Query joinQuery = blockJoinQuery(fromChildren, fromQuery, fromFilterQuery, joinScoreMode);
+    return joinedStream(query, filterQuery, limit, sort, fields, joinQuery, joinScoreMode, scoreMode, parallel, ImmutablePair::of);
+  }
+
+  // a scoring join ranks the to side by the from-side scores, so it is scored unless a mode is given.
+  private <T> Stream<T> joinedStream(String query, String filterQuery, Integer limit, String sort, String fields, Query joinQuery, ScoreMode joinScoreMode, LScoreMode scoreMode, boolean parallel, BiFunction<ScoreDoc,Document,T> mapper) throws IOException {
+    LScoreMode mode = scoreMode(scoreMode);
+    IndexSearcher searcher = acquire();
+    try {
+      return releasing(searcher,
+               fetcher(searcher, fields).stream(
+                 scoreDocStream(searcher, filteredQuery(query, filterQuery, joinQuery, joinScoreMode), limit, sort, mode, parallel),
+                 PAGE_SIZE, mapper));
+    } catch (IOException | RuntimeException e) {
+      release(searcher);
+      throw e;
+    }
   }
 
   List<String> groupingField(String groupField, String groupFieldSort, String query, String filterQuery) throws IOException {
@@ -179,69 +655,110 @@ public class LCommand {
   }
 
   public Stream<String> groupingStream(String groupField, String groupFieldSort, String query, String filterQuery) throws IOException {
-    TopGroups<BytesRef> result = groupingSearch(groupField, groupFieldSort, query, filterQuery);
-    return Arrays.stream(result.groups).map(group -> group.groupValue.utf8ToString());
+    TopGroups<BytesRef> result = groupingSearch(groupField, groupFieldSort, query, filterQuery, 0, null, 1, null);
+    return Arrays.stream(result.groups).map(group -> groupValue(group));
   }
 
   public Stream<ImmutablePair<String,Integer>> groupingPairStream(String groupField, String groupFieldSort, String query, String filterQuery) throws IOException {
-    TopGroups<BytesRef> result = groupingSearch(groupField, groupFieldSort, query, filterQuery);
+    TopGroups<BytesRef> result = groupingSearch(groupField, groupFieldSort, query, filterQuery, 0, null, 1, null);
     return Arrays.stream(result.groups)
-           .map(group -> ImmutablePair.of(group.groupValue.utf8ToString(), group.totalHits));
+           .map(group -> ImmutablePair.of(groupValue(group), group.totalHits));
+  }
+
+  public Stream<ImmutablePair<String,List<Document>>> groupingDocumentStream(String groupField, String groupFieldSort, String query, String filterQuery, int groupOffset, Integer groupLimit, int groupDocsLimit, String sortWithinGroup, String fields) throws IOException {
+    return groupingDocumentStream(groupField, groupFieldSort, query, filterQuery, groupOffset, groupLimit, groupDocsLimit, sortWithinGroup, fields, true);
+  }
+
+  Stream<ImmutablePair<String,List<Document>>> groupingDocumentStream(String groupField, String groupFieldSort, String query, String filterQuery, int groupOffset, Integer groupLimit, int groupDocsLimit, String sortWithinGroup, String fields, boolean parallel) throws IOException {
+    IndexSearcher searcher = acquire();
+    try {
+      TopGroups<BytesRef> result = groupingSearch(searcher, groupField, groupFieldSort, query, filterQuery, groupOffset, groupLimit, groupDocsLimit, sortWithinGroup, parallel);
+      ScoreDoc[] hits = Arrays.stream(result.groups).flatMap(group -> Arrays.stream(group.scoreDocs)).toArray(ScoreDoc[]::new);
+      Document[] docs = fetcher(searcher, fields).fetch(hits);
+      List<ImmutablePair<String,List<Document>>> groups = new ArrayList<>(result.groups.length);
+      int next = 0;
+      for (GroupDocs<BytesRef> group : result.groups) {
+        groups.add(ImmutablePair.of(groupValue(group), Arrays.asList(Arrays.copyOfRange(docs, next, next + group.scoreDocs.length))));
+        next += group.scoreDocs.length;
+      }
+      return groups.stream();
+    } finally {
+      release(searcher);
+    }
+  }
+
+  private TopGroups<BytesRef> groupingSearch(String groupField, String groupFieldSort, String query, String filterQuery, int groupOffset, Integer groupLimit, int groupDocsLimit, String sortWithinGroup) throws IOException {
+    IndexSearcher searcher = acquire();
+    try {
+      return groupingSearch(searcher, groupField, groupFieldSort, query, filterQuery, groupOffset, groupLimit, groupDocsLimit, sortWithinGroup, true);
+    } finally {
+      release(searcher);
+    }
   }
 
-  private TopGroups<BytesRef> groupingSearch(String groupField, String groupFieldSort, String query, String filterQuery) throws IOException {
+  // past GROUPING_CACHE_MAX_DOCS matches the hit cache is dropped and the second pass re-runs the query,
+  // so memory follows the group window rather than the number of matches.
+  private TopGroups<BytesRef> groupingSearch(IndexSearcher searcher, String groupField, String groupFieldSort, String query, String filterQuery, int groupOffset, Integer groupLimit, int groupDocsLimit, String sortWithinGroup, boolean parallel) throws IOException {
+    Preconditions.checkArgument(groupOffset >= 0, "groupOffset must be >= 0");
+    Preconditions.checkArgument(groupDocsLimit > 0, "groupDocsLimit must be > 0");
     GroupingSearch groupingSearch = new GroupingSearch(groupField);
     groupingSearch.setAllGroupHeads(false);
     groupingSearch.setAllGroups(false);
-    groupingSearch.setCaching(MAX_LIMIT, /* cacheScores */ false);
+    groupingSearch.setCaching(GROUPING_CACHE_MAX_DOCS, /* cacheScores */ false);
     groupingSearch.setFillSortFields(false);
-    groupingSearch.setGroupDocsLimit(1);
+    groupingSearch.setGroupDocsLimit(groupDocsLimit);
     groupingSearch.setGroupDocsOffset(0);
     String gSort = MoreObjects.firstNonNull(groupFieldSort, groupField + " asc");
     groupingSearch.setGroupSort(sort(gSort));
     groupingSearch.setIncludeMaxScore(false);
     groupingSearch.setIncludeScores(false);
-    String sortWithinGroup = null;
     String sortWG = MoreObjects.firstNonNull(sortWithinGroup, schema.getUniqueKey() + " asc");
     groupingSearch.setSortWithinGroup(sort(sortWG));
-    return groupingSearch.search(searcher, filteredQuery(query, filterQuery), 0, MAX_LIMIT);
+    return groupingSearch.search(executing(searcher, parallel), filteredQuery(query, filterQuery), groupOffset, groupLimit(searcher, groupLimit));
   }
 
-  IndexSearcher searcher() {
-    return searcher;
+  // the first pass allocates a comparator slot per group, and there can't be more groups than documents.
+  private int groupLimit(IndexSearcher searcher, Integer groupLimit) {
+    if (groupLimit != null) {
+      return groupLimit;
+    }
+    return Math.max(1, Math.min(MAX_LIMIT, searcher.getIndexReader().maxDoc()));
+  }
+
+  private String groupValue(GroupDocs<BytesRef> group) {
+    return (group.groupValue == null) ? null : group.groupValue.utf8ToString();
   }
 
   public LSchema schema() {
     return schema;
   }
 
-  private Document getDoc(ScoreDoc scoreDoc, String fields) {
-    Document doc = null;
-    try {
-      if (fields == null) {
-        doc = searcher.doc(scoreDoc.doc);
-      } else {
-        doc = searcher.doc(scoreDoc.doc, fieldsToLoad(fields));
-      }
-    } catch (IOException e) { /* ignore */ }
-    return doc;
+  public LFilterCache filterCache() {
+    return connection.getFilterCache(name);
   }
 
-  private Set<String> fieldsToLoad(String fields) {
-    return Sets.newHashSet(Splitter.on(",").trimResults().omitEmptyStrings().split(fields));
+  private Stream<ScoreDoc> scoreDocStream(IndexSearcher searcher, Query filteredQuery, Integer limit, String sort, LScoreMode scoreMode, boolean parallel) throws IOException {
+    Query q = (scoreMode == LScoreMode.NO_SCORE) ? new ConstantScoreQuery(filteredQuery) : filteredQuery;
+    return StreamSupport.stream(
+             SearchAfterSpliterator.open(executing(searcher, parallel), q, sort(sort, scoreMode), scoreMode, limit(limit), PAGE_SIZE),
+             /* parallel */ false);
   }
 
-  private TopFieldDocs search(Query filteredQuery, Integer limit, String sort) throws IOException {
-    TopFieldDocs results =
-      searcher.search(/*query */                     filteredQuery,
-                      /*n     */                      limit(limit),
-                      /*sort  */                        sort(sort),
-                      /*scores*/                              true,
-                      /*maxscr*/                             false);
-    return results;
+  // without a mode hits are scored as before; callers that don't read scores opt out with NO_SCORE.
+  private LScoreMode scoreMode(LScoreMode scoreMode) {
+    return (scoreMode != null) ? scoreMode : LScoreMode.SCORE;
   }
 
-  private TopFieldDocs searchAfter(ScoreDoc lastBottom, Query filteredQuery, Integer limit, String sort) throws IOException {
+  // projections that doc values can answer skip the stored fields, other segments fall back to them.
+  private DocumentFetcher fetcher(IndexSearcher searcher, String fields) {
+    return new DocumentFetcher(searcher.getIndexReader(), schema, (fields == null) ? null : fieldsToLoad(fields));
+  }
+
+  private Set<String> fieldsToLoad(String fields) {
+    return Sets.newHashSet(Splitter.on(",").trimResults().omitEmptyStrings().split(fields));
+  }
+
+  private TopFieldDocs searchAfter(IndexSearcher searcher, ScoreDoc lastBottom, Query filteredQuery, Integer limit, String sort) throws IOException {
     TopFieldDocs results =
       searcher.searchAfter(
                       /*after */                        lastBottom,
@@ -254,20 +771,30 @@ public class LCommand {
   }
 
   private Query filteredQuery(String query, String filterQuery) {
-    return filteredQuery(query, filterQuery, null);
+    return filteredQuery(query, filterQuery, null, ScoreMode.None);
   }
 
-  private Query filteredQuery(String query, String filterQuery, Filter filter) {
+  private Query filteredQuery(String query, String filterQuery, Query joinQuery, ScoreMode joinScoreMode) {
     BooleanQuery booleanQuery = new BooleanQuery();
-    booleanQuery.add(filterQuery(filterQuery), BooleanClause.Occur.FILTER);
-    if (filter != null) {
-      booleanQuery.add(filter, BooleanClause.Occur.FILTER);
+    booleanQuery.add(query(query), BooleanClause.Occur.MUST);
+    if (filterQuery != null) {
+      booleanQuery.add(filterQuery(filterQuery), BooleanClause.Occur.FILTER);
+    }
+    if (joinQuery != null) {
+      booleanQuery.add(joinQuery, (joinScoreMode == ScoreMode.None) ? BooleanClause.Occur.FILTER : BooleanClause.Occur.MUST);
     }
-    return new FilteredQuery(query(query), new QueryWrapperFilter(booleanQuery));
+    return booleanQuery;
   }
 
+  // a filter-only search matches everything, there is nothing to parse or cache.
   private Query query(String queryString) {
-    String q = MoreObjects.firstNonNull(queryString, "*:*");
+    if (queryString == null) {
+      return new MatchAllDocsQuery();
+    }
+    return connection.getParsedQueryCache().get(schema, queryString, () -> parse(queryString));
+  }
+
+  private Query parse(String q) {
     StandardQueryParser parser = new StandardQueryParser();
     parser.setAnalyzer(schema.getQueryAnalyzer());
     parser.setNumericConfigMap(schema.getNumericConfigMap());
@@ -280,22 +807,82 @@ public class LCommand {
 
   private Query filterQuery(String filterQuery) {
     Query query = query(filterQuery);
-    return new CachingWrapperQuery(new QueryWrapperFilter(query));
+    return connection.getFilterCache(name).wrap(query);
+  }
+
+  // the collected join terms only change with the from-side reader, so they are cached per reader version.
+  private Query joinQuery(LCommand fromCommand, String fromField, String toField, String fromQuery, String fromFilterQuery, ScoreMode joinScoreMode, boolean parallel) throws IOException {
+    String from = MoreObjects.firstNonNull(fromField, fromCommand.schema().getUniqueKey());
+    String to = MoreObjects.firstNonNull(toField, schema.getUniqueKey());
+    IndexSearcher fromSearcher = fromCommand.acquire();
+    try {
+      long fromVersion = ((DirectoryReader) fromSearcher.getIndexReader()).getVersion();
+      return connection.getJoinQueryCache().get(fromCommand.collectionPath(), fromVersion, collectionPath(), from, to, fromQuery, fromFilterQuery, joinScoreMode,
+        () -> planJoin(fromCommand, fromCommand.executing(fromSearcher, parallel), from, to, fromQuery, fromFilterQuery, joinScoreMode));
+    } finally {
+      fromCommand.release(fromSearcher);
+    }
   }
 
-  private Query joinQuery(LCommand fromCommand, String fromField, String toField, String fromQuery, String fromFilterQuery) throws IOException {
-    return JoinUtil.createJoinQuery(/*fromField    */MoreObjects.firstNonNull(fromField, fromCommand.schema().getUniqueKey()),
-                                    /*multipleValuesPerDocument*/false,
-                                    /*toField      */MoreObjects.firstNonNull(toField, schema.getUniqueKey()),
-                                    /*fromQuery    */filteredQuery(fromQuery, fromFilterQuery),
-                                    /*fromSearcher */fromCommand.searcher(),
-                                    /*scoreMode    */ScoreMode.None);
+  // non-scoring joins over string keys go through JoinPlanner, scoring joins and other key types through JoinUtil.
+  // JoinUtil keeps its keys to itself, so its weight is the number of from-side terms.
+  private JoinQueryCache.Joined planJoin(LCommand fromCommand, IndexSearcher fromSearcher, String from, String to, String fromQuery, String fromFilterQuery, ScoreMode joinScoreMode) throws IOException {
+    Query fromFilteredQuery = fromCommand.filteredQuery(fromQuery, fromFilterQuery);
+    if ((joinScoreMode == ScoreMode.None) && fromCommand.schema().getFieldType(from).equals(LDataType.STRING)) {
+      boolean toHasSortedDocValues = schema.getFieldType(to).equals(LDataType.STRING);
+      List<BytesRef> keys = JoinPlanner.keys(fromSearcher, fromFilteredQuery, from);
+      return new JoinQueryCache.Joined(JoinPlanner.plan(keys, to, toHasSortedDocValues, HASH_JOIN_MAX_KEYS), keys.size());
+    }
+    Query joinQuery = JoinUtil.createJoinQuery(/*fromField    */from,
+                                               /*multipleValuesPerDocument*/false,
+                                               /*toField      */to,
+                                               /*fromQuery    */fromFilteredQuery,
+                                               /*fromSearcher */fromSearcher,
+                                               /*scoreMode    */joinScoreMode);
+    return new JoinQueryCache.Joined(joinQuery, termCount(fromSearcher, from));
+  }
+
+  private static long termCount(IndexSearcher searcher, String field) throws IOException {
+    long count = 0;
+    for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+      Terms terms = leaf.reader().terms(field);
+      if (terms != null) {
+        count += (terms.size() >= 0) ? terms.size() : leaf.reader().maxDoc();
+      }
+    }
+    return count;
+  }
+
+  // the from side is restricted to its own block role, so regular documents never join.
+  private Query blockJoinQuery(boolean fromChildren, String fromQuery, String fromFilterQuery, ScoreMode joinScoreMode) {
+    BooleanQuery from = new BooleanQuery();
+    from.add(filteredQuery(fromQuery, fromFilterQuery), BooleanClause.Occur.MUST);
+    from.add(new TermQuery(new Term(BLOCK_TYPE_FIELD, fromChildren ? BLOCK_CHILD : BLOCK_PARENT)), BooleanClause.Occur.FILTER);
+    if (fromChildren) {
+      return new ToParentBlockJoinQuery(from, blockParents, joinScoreMode);
+    }
+    BooleanQuery children = new BooleanQuery();
+    children.add(new ToChildBlockJoinQuery(from, blockParents), BooleanClause.Occur.MUST);
+    children.add(new TermQuery(new Term(BLOCK_TYPE_FIELD, BLOCK_CHILD)), BooleanClause.Occur.FILTER);
+    return children;
+  }
+
+  private String collectionPath() {
+    return new File(connection.getDatabasePath(), name).getPath();
   }
 
   private Integer limit(Integer limit) {
     return MoreObjects.firstNonNull(limit, MAX_LIMIT);
   }
 
+  // without scores there is no relevance order, hits come back in index order.
+  private Sort sort(String sortFieldOrders, LScoreMode scoreMode) {
+    if ((sortFieldOrders == null) && (scoreMode == LScoreMode.NO_SCORE)) {
+      return Sort.INDEXORDER;
+    }
+    return sort(sortFieldOrders);
+  }
+
   private Sort sort(String sortFieldOrders) {
     Sort sort = new Sort();
     if (sortFieldOrders == null) {
@@ -341,12 +928,14 @@ public class LCommand {
     return sort;
   }
 
-  private FastVectorHighlighter highlighter = new FastVectorHighlighter();
-
   public String highlighting(String query, int docId, String field) throws IOException {
-    FieldQuery fieldQuery  = highlighter.getFieldQuery(query(query));
-    String[] bestFragments = highlighter.getBestFragments(fieldQuery, reader, docId, field, /* fragCharSize */ 100, /* maxNumFragments */ 3);
-    return Joiner.on(" ... ").skipNulls().join(bestFragments);
+    IndexSearcher searcher = acquire();
+    try {
+      PageHighlighter highlighter = new PageHighlighter(schema, query(query), searcher, field, /* fragCharSize */ 100, /* maxNumFragments */ 3, null);
+      return highlighter.highlight(new ScoreDoc[] { new ScoreDoc(docId, Float.NaN) })[0];
+    } finally {
+      release(searcher);
+    }
   }
 
 }
@@ -4,14 +4,22 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.util.Map;
-import org.apache.lucene.index.DirectoryReader;
+import java.util.concurrent.ExecutorService;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.TrackingIndexWriter;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.NRTCachingDirectory;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multimaps;
 import com.google.common.io.Files;
 
 public class LConnection implements Closeable {
@@ -37,16 +45,27 @@ public class LConnection implements Closeable {
 
   @Override
   public void close() throws IOException {
-    for (Map.Entry<String, IndexWriter> entry : indexWriters.entrySet())
+    groupCommitter.close();
+    for (Map.Entry<String, ControlledRealTimeReopenThread<IndexSearcher>> entry : reopenThreads.entries())
+      entry.getValue().close();
+    for (Map.Entry<String, SearcherManager> entry : searcherManagers.entries())
       entry.getValue().close();
-    for (Map.Entry<String, DirectoryReader> entry : indexReaders.entrySet())
+    for (Map.Entry<String, IndexWriter> entry : indexWriters.entrySet())
       entry.getValue().close();
+    // the writers commit on close, so the logs are not needed anymore
+    for (Map.Entry<String, WriteAheadLog> entry : writeAheadLogs.entrySet())
+      entry.getValue().clear();
     for (Map.Entry<String, Directory> entry : directories.entrySet())
       entry.getValue().close();
+    parsedQueryCache.invalidateAll();
+    joinQueryCache.invalidateAll();
+    for (Map.Entry<String, LFilterCache> entry : filterCaches.entrySet())
+      entry.getValue().clear();
   }
 
   private Map<String,Directory> directories = Maps.newHashMap();
   private Map<String,IndexWriter> indexWriters = Maps.newHashMap();
+  private Map<String,TrackingIndexWriter> trackingIndexWriters = Maps.newHashMap();
 
   Directory getDirectory(String name) throws IOException {
     createDirectory(name);
@@ -62,6 +81,14 @@ public class LConnection implements Closeable {
     return indexWriters.get(name);
   }
 
+  TrackingIndexWriter getTrackingIndexWriter(String name, LSchema schema) throws IOException {
+    TrackingIndexWriter writer = trackingIndexWriters.get(name);
+    if (writer == null) {
+      getIndexWriter(name, schema);
+    }
+    return trackingIndexWriters.get(name);
+  }
+
   private void createDirectory(String name) throws IOException {
     Directory fsDir = FSDirectory.open(new File(databasePath, name).toPath());
     NRTCachingDirectory cachedFSDir = new NRTCachingDirectory(fsDir, 5.0, 60.0);
@@ -74,15 +101,109 @@ public class LConnection implements Closeable {
       .setUseCompoundFile(true)
       .setCommitOnClose(true)
       .setRAMBufferSizeMB(100.0);
+    config.setMergePolicy(new UniqueKeyMergePolicy(config.getMergePolicy(), schema));
     IndexWriter writer = new IndexWriter(directories.get(name), config);
     writer.commit();
     indexWriters.put(name, writer);
+    trackingIndexWriters.put(name, new TrackingIndexWriter(writer));
+  }
+
+  private ListMultimap<String,SearcherManager> searcherManagers =
+    Multimaps.synchronizedListMultimap(ArrayListMultimap.create());
+
+  void putSearcherManager(String name, SearcherManager searcherManager) {
+    searcherManagers.put(name, searcherManager);
+  }
+
+  private ListMultimap<String,ControlledRealTimeReopenThread<IndexSearcher>> reopenThreads =
+    Multimaps.synchronizedListMultimap(ArrayListMultimap.create());
+
+  void putReopenThread(String name, ControlledRealTimeReopenThread<IndexSearcher> reopenThread) {
+    reopenThreads.put(name, reopenThread);
+  }
+
+  void removeReopenThread(String name, ControlledRealTimeReopenThread<IndexSearcher> reopenThread) {
+    reopenThreads.remove(name, reopenThread);
+  }
+
+  public static final int PARSED_QUERY_CACHE_SIZE = 1000;
+
+  private ParsedQueryCache parsedQueryCache = new ParsedQueryCache(PARSED_QUERY_CACHE_SIZE);
+
+  ParsedQueryCache getParsedQueryCache() {
+    return parsedQueryCache;
+  }
+
+  public CacheStats parsedQueryCacheStats() {
+    return parsedQueryCache.stats();
+  }
+
+  public static final long JOIN_QUERY_CACHE_TERMS = 1_000_000;
+
+  private JoinQueryCache joinQueryCache = new JoinQueryCache(JOIN_QUERY_CACHE_TERMS);
+
+  JoinQueryCache getJoinQueryCache() {
+    return joinQueryCache;
+  }
+
+  public CacheStats joinQueryCacheStats() {
+    return joinQueryCache.stats();
+  }
+
+  public static final int MIN_DOCS_PER_SLICE = 250_000;
+
+  private volatile ParallelSearch parallelSearch;
+
+  public void setSearchExecutor(ExecutorService executor) {
+    setSearchExecutor(executor, MIN_DOCS_PER_SLICE);
+  }
+
+  public void setSearchExecutor(ExecutorService executor, int minDocsPerSlice) {
+    parallelSearch = (executor == null) ? null : new ParallelSearch(executor, minDocsPerSlice);
+  }
+
+  ParallelSearch getParallelSearch() {
+    return parallelSearch;
+  }
+
+  public static final long COMMIT_WINDOW_MILLIS = 10;
+  public static final int COMMIT_MAX_PENDING = 100;
+
+  private GroupCommitter groupCommitter = new GroupCommitter(COMMIT_WINDOW_MILLIS, COMMIT_MAX_PENDING);
+
+  // commit requests made within windowMillis, or until maxPending of them, are coalesced into one commit.
+  public void setCommitWindow(long windowMillis, int maxPending) {
+    groupCommitter.configure(windowMillis, maxPending);
+  }
+
+  GroupCommitter getGroupCommitter() {
+    return groupCommitter;
+  }
+
+  public static final long WAL_SYNC_INTERVAL_MILLIS = 1000;
+
+  private Map<String,WriteAheadLog> writeAheadLogs = Maps.newHashMap();
+
+  // null if the schema doesn't log; the log of a collection lives next to its index.
+  synchronized WriteAheadLog getWriteAheadLog(String name, LSchema schema) throws IOException {
+    if (schema.getWriteAheadLog() == null) {
+      return null;
+    }
+    WriteAheadLog log = writeAheadLogs.get(name);
+    if (log == null) {
+      log = new WriteAheadLog(new File(databasePath, name + ".wal"), schema.getWriteAheadLog(), WAL_SYNC_INTERVAL_MILLIS);
+      writeAheadLogs.put(name, log);
+    }
+    return log;
   }
 
-  private Map<String,DirectoryReader> indexReaders = Maps.newHashMap();
+  public static final int FILTER_CACHE_SIZE = 1000;
+  public static final long FILTER_CACHE_RAM_BYTES = 32L * 1024 * 1024;
+
+  private Map<String,LFilterCache> filterCaches = Maps.newConcurrentMap();
 
-  void putIndexReader(String name, DirectoryReader reader) {
-    indexReaders.put(name, reader);
+  LFilterCache getFilterCache(String name) {
+    return filterCaches.computeIfAbsent(name, key -> new LFilterCache(FILTER_CACHE_SIZE, FILTER_CACHE_RAM_BYTES));
   }
 
 
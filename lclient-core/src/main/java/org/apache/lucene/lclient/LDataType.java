@@ -79,4 +79,12 @@ public class LDataType {
     TEXT_NOT_STORED.freeze();
   }
 
+  static final FieldType TEXT_OFFSETS_NOT_STORED = new FieldType();
+  static {
+    TEXT_OFFSETS_NOT_STORED.setTokenized(true);
+    TEXT_OFFSETS_NOT_STORED.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+    TEXT_OFFSETS_NOT_STORED.setStored(false);
+    TEXT_OFFSETS_NOT_STORED.freeze();
+  }
+
 }
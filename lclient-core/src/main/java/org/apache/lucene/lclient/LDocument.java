@@ -1,20 +1,12 @@
 package org.apache.lucene.lclient;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
-import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.document.DoubleField;
-import org.apache.lucene.document.Field;
-import org.apache.lucene.document.FieldType;
-import org.apache.lucene.document.FloatField;
-import org.apache.lucene.document.IntField;
-import org.apache.lucene.document.LongField;
-import org.apache.lucene.document.NumericDocValuesField;
-import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.util.BytesRef;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
@@ -25,6 +17,10 @@ public class LDocument {
   private Term uniqueKey;
   private Document doc;
 
+  // set for a template only: one slot per field, reset instead of reallocated.
+  private Map<String,FieldAppender.Slot> slots;
+  private List<FieldAppender.Slot> appended;
+
   public LDocument(LSchema schema) throws IOException {
     Map<String, Object> emptyDocument = Maps.newHashMap();
     init(schema, emptyDocument);
@@ -34,6 +30,20 @@ public class LDocument {
     init(schema, document);
   }
 
+  LDocument(LSchema schema, boolean reusable) {
+    this.schema = schema;
+    this.doc = new Document();
+    if (reusable) {
+      this.slots = Maps.newHashMap();
+      this.appended = new ArrayList<>();
+    }
+  }
+
+  // the calling thread's reusable document; it must be written before the same thread asks for it again.
+  public static LDocument template(LSchema schema) {
+    return schema.template();
+  }
+
   private void init(LSchema schema, Map<String, Object> document) throws IOException {
     this.schema = schema;
     this.doc = new Document();
@@ -43,56 +53,79 @@ public class LDocument {
     }
   }
 
-  public LDocument append(String name, Object value) throws IOException {
-    append(name, value, schema.getFieldType(name));
+  LDocument reset() {
+    uniqueKey = null;
+    doc.getFields().clear();
+    appended.clear();
     return this;
   }
 
-  private LDocument append(String name, Object value, FieldType dataType) throws IOException {
-    if (name.equals(schema.getUniqueKey())) {
-      this.uniqueKey = new Term(name, value.toString());
-    }
-    if (dataType.equals(LDataType.TEXT)) {
-      appendText(name, value.toString());
-      return this;
-    }
-    Field f = null;
-    Field fdv = null;
-    if (dataType.equals(LDataType.DOUBLE)) {
-      f = new DoubleField(name, Double.parseDouble(value.toString()), dataType);
-      fdv = new NumericDocValuesField(name, Double.doubleToLongBits(f.numericValue().doubleValue()));
-    }
-    if (dataType.equals(LDataType.FLOAT)) {
-      f = new FloatField(name, Float.parseFloat(value.toString()), dataType);
-      fdv = new NumericDocValuesField(name, Float.floatToIntBits(f.numericValue().floatValue()));
-    }
-    if (dataType.equals(LDataType.INT)) {
-      f = new IntField(name, Integer.parseInt(value.toString()), dataType);
-      fdv = new NumericDocValuesField(name, f.numericValue().longValue());
+  public LDocument append(String name, Object value) throws IOException {
+    FieldAppender.Slot slot = slot(name);
+    slot.set(value);
+    return added(slot, value);
+  }
+
+  public LDocument append(String name, CharSequence value) throws IOException {
+    FieldAppender.Slot slot = slot(name);
+    slot.set(value);
+    return added(slot, value);
+  }
+
+  public LDocument append(String name, int value) throws IOException {
+    FieldAppender.Slot slot = slot(name);
+    slot.set(value);
+    return added(slot, isUniqueKey(name) ? Integer.toString(value) : null);
+  }
+
+  public LDocument append(String name, long value) throws IOException {
+    FieldAppender.Slot slot = slot(name);
+    slot.set(value);
+    return added(slot, isUniqueKey(name) ? Long.toString(value) : null);
+  }
+
+  public LDocument append(String name, float value) throws IOException {
+    FieldAppender.Slot slot = slot(name);
+    slot.set(value);
+    return added(slot, isUniqueKey(name) ? Float.toString(value) : null);
+  }
+
+  public LDocument append(String name, double value) throws IOException {
+    FieldAppender.Slot slot = slot(name);
+    slot.set(value);
+    return added(slot, isUniqueKey(name) ? Double.toString(value) : null);
+  }
+
+  private FieldAppender.Slot slot(String name) {
+    if (slots == null) {
+      return schema.getAppender(name).newSlot();
     }
-    if (dataType.equals(LDataType.LONG)) {
-      f = new LongField(name, Long.parseLong(value.toString()), dataType);
-      fdv = new NumericDocValuesField(name, f.numericValue().longValue());
+    FieldAppender.Slot slot = slots.get(name);
+    if (slot == null) {
+      slot = schema.getAppender(name).newSlot();
+      slots.put(name, slot);
     }
-    if (dataType.equals(LDataType.STRING)) {
-      f = new Field(name, value.toString(), dataType);
-      fdv = new SortedDocValuesField(name, new BytesRef(value.toString()));
+    Preconditions.checkArgument(!appended.contains(slot), "field %s already appended to the template", name);
+    return slot;
+  }
+
+  private LDocument added(FieldAppender.Slot slot, Object keyValue) {
+    if (isUniqueKey(slot.name)) {
+      this.uniqueKey = new Term(slot.name, keyValue.toString());
     }
-    doc.add(Preconditions.checkNotNull(f));
-    if (!name.equals(schema.getUniqueKey())) {
-      doc.add(Preconditions.checkNotNull(fdv));
+    slot.addTo(doc);
+    if (appended != null) {
+      appended.add(slot);
     }
     return this;
   }
 
-  private LDocument appendText(String name, String text) throws IOException {
-    Field f = new Field(name, text, LDataType.TEXT_STORED);
-    Field fdv = new BinaryDocValuesField(name, new BytesRef(text));
-    doc.add(f);
-    doc.add(fdv);
-    Field textf = new Field(name, text, LDataType.TEXT_NOT_STORED);
-    doc.add(textf);
-    return this;
+  private boolean isUniqueKey(String name) {
+    return name.equals(schema.getUniqueKey());
+  }
+
+  boolean isTemplate() {
+    return slots != null;
   }
 
   Term uniqueKey() {
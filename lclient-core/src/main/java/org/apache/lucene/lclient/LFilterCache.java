@@ -0,0 +1,100 @@
+package org.apache.lucene.lclient;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LRUQueryCache;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Accountable;
+
+public final class LFilterCache implements Accountable {
+
+  private final LRUQueryCache cache;
+
+  LFilterCache(int maxSize, long maxRamBytesUsed) {
+    this.cache = new LRUQueryCache(maxSize, maxRamBytesUsed);
+  }
+
+  Query wrap(Query filter) {
+    return new CachedFilterQuery(filter);
+  }
+
+  public long hitCount() {
+    return cache.getHitCount();
+  }
+
+  public long missCount() {
+    return cache.getMissCount();
+  }
+
+  public double hitRatio() {
+    long total = cache.getTotalCount();
+    return (total == 0) ? 0d : (double) cache.getHitCount() / total;
+  }
+
+  public long size() {
+    return cache.getCacheSize();
+  }
+
+  public long evictionCount() {
+    return cache.getEvictionCount();
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return cache.ramBytesUsed();
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    return cache.getChildResources();
+  }
+
+  public void clear() {
+    cache.clear();
+  }
+
+  // bitsets are keyed by filter and segment core, so segments that survive a reopen keep theirs.
+  private final class CachedFilterQuery extends Query {
+
+    private final Query filter;
+
+    CachedFilterQuery(Query filter) {
+      this.filter = filter;
+    }
+
+    @Override
+    public Query rewrite(IndexReader reader) throws IOException {
+      Query rewritten = filter.rewrite(reader);
+      return (rewritten == filter) ? this : new CachedFilterQuery(rewritten);
+    }
+
+    @Override
+    public Weight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
+      Weight weight = searcher.createWeight(filter, false);
+      return cache.doCache(weight, QueryCachingPolicy.ALWAYS_CACHE);
+    }
+
+    @Override
+    public String toString(String field) {
+      return "LFilterCache(" + filter.toString(field) + ")";
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!super.equals(obj)) return false;
+      return filter.equals(((CachedFilterQuery) obj).filter);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * super.hashCode() + filter.hashCode();
+    }
+
+  }
+
+}
@@ -0,0 +1,11 @@
+package org.apache.lucene.lclient;
+
+public enum LHighlightMode {
+
+  // term vectors with positions and offsets, highlighted by FastVectorHighlighter
+  TERM_VECTORS,
+
+  // offsets in the postings and no term vectors, highlighted by PostingsHighlighter
+  POSTINGS
+
+}
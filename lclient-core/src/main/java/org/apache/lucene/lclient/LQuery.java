@@ -2,11 +2,13 @@ package org.apache.lucene.lclient;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.join.ScoreMode;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.FluentIterable;
@@ -20,12 +22,23 @@ public class LQuery {
   private Integer limit;
   private String sort;
   private String fields;
+  private LScoreMode scoreMode;
+  private boolean parallel = true;
+
+  private String groupField;
+  private String groupSort;
+  private int groupOffset = 0;
+  private Integer groupLimit;
+  private int groupDocsLimit = 1;
+  private String sortWithinGroup;
 
   private LCommand fromCommand;
   private String fromField;
   private String toField;
   private String fromQuery;
   private String fromFilterQuery;
+  private ScoreMode joinScoreMode = ScoreMode.None;
+  private Boolean blockFromChildren;
 
   public LQuery(LCommand command) {
     this.command = command;
@@ -56,6 +69,47 @@ public class LQuery {
     return this;
   }
 
+  public LQuery scoreMode(LScoreMode scoreMode) {
+    this.scoreMode = scoreMode;
+    return this;
+  }
+
+  // false keeps this query on the caller's thread even when a search executor is set.
+  public LQuery parallel(boolean parallel) {
+    this.parallel = parallel;
+    return this;
+  }
+
+  public LQuery group(String groupField) {
+    this.groupField = groupField;
+    return this;
+  }
+
+  public LQuery groupSort(String groupSort) {
+    this.groupSort = groupSort;
+    return this;
+  }
+
+  public LQuery groupOffset(int groupOffset) {
+    this.groupOffset = groupOffset;
+    return this;
+  }
+
+  public LQuery groupLimit(Integer groupLimit) {
+    this.groupLimit = groupLimit;
+    return this;
+  }
+
+  public LQuery groupDocsLimit(int groupDocsLimit) {
+    this.groupDocsLimit = groupDocsLimit;
+    return this;
+  }
+
+  public LQuery sortWithinGroup(String sortWithinGroup) {
+    this.sortWithinGroup = sortWithinGroup;
+    return this;
+  }
+
   public LQuery join(LCommand fromCommand, String fromField) {
     this.fromCommand = fromCommand;
     this.fromField = fromField;
@@ -77,12 +131,100 @@ public class LQuery {
     return this;
   }
 
+  public LQuery joinScoreMode(ScoreMode joinScoreMode) {
+    this.joinScoreMode = Preconditions.checkNotNull(joinScoreMode);
+    return this;
+  }
+
+  // block join within command: parents of the children matching fromQuery/fromFilter.
+  public LQuery joinFromChildren() {
+    this.blockFromChildren = Boolean.TRUE;
+    return this;
+  }
+
+  // block join within command: children of the parents matching fromQuery/fromFilter.
+  public LQuery joinFromParents() {
+    this.blockFromChildren = Boolean.FALSE;
+    return this;
+  }
+
+  private boolean joined() {
+    return (blockFromChildren != null) || ((fromCommand != null) && (fromField != null));
+  }
+
   public List<Document> toList() throws IOException {
     Preconditions.checkNotNull(command);
-    if ((fromCommand != null) && (fromField != null)) {
-      return command.JoinFrom(query, filterQuery, limit, sort, fields, fromCommand, fromField, toField, fromQuery, fromFilterQuery);
+    if (blockFromChildren != null) {
+      return command.blockJoin(query, filterQuery, limit, sort, fields, blockFromChildren, fromQuery, fromFilterQuery, joinScoreMode, scoreMode, parallel);
+    } else if ((fromCommand != null) && (fromField != null)) {
+      return command.JoinFrom(query, filterQuery, limit, sort, fields, fromCommand, fromField, toField, fromQuery, fromFilterQuery, joinScoreMode, scoreMode, parallel);
     } else {
-      return command.find(query, filterQuery, limit, sort, fields);
+      return command.find(query, filterQuery, limit, sort, fields, scoreMode, parallel);
+    }
+  }
+
+  public int count() throws IOException {
+    Preconditions.checkNotNull(command);
+    if (joined()) {
+      throw new UnsupportedOperationException("currently join not supported");
+    } else {
+      return command.count(query, filterQuery, parallel);
+    }
+  }
+
+  public boolean exists() throws IOException {
+    Preconditions.checkNotNull(command);
+    if (joined()) {
+      throw new UnsupportedOperationException("currently join not supported");
+    } else {
+      return command.exists(query, filterQuery);
+    }
+  }
+
+  public Map<String,LStats> aggregate(String fields) throws IOException {
+    Preconditions.checkNotNull(command);
+    if (joined()) {
+      throw new UnsupportedOperationException("currently join not supported");
+    } else {
+      return command.aggregate(query, filterQuery, fields, parallel);
+    }
+  }
+
+  public Map<String,List<ImmutablePair<String,Integer>>> facets(String fields, int topN) throws IOException {
+    Preconditions.checkNotNull(command);
+    if (joined()) {
+      throw new UnsupportedOperationException("currently join not supported");
+    } else {
+      return command.facets(query, filterQuery, fields, topN, parallel);
+    }
+  }
+
+  public Stream<Document> export() throws IOException {
+    Preconditions.checkNotNull(command);
+    if (joined()) {
+      throw new UnsupportedOperationException("currently join not supported");
+    } else {
+      return command.exportStream(query, filterQuery, fields);
+    }
+  }
+
+  public Stream<ImmutablePair<Document,String>> toHighlightedStream(String field, int fragSize, int maxFragments) throws IOException {
+    Preconditions.checkNotNull(command);
+    Preconditions.checkNotNull(field);
+    if (joined()) {
+      throw new UnsupportedOperationException("currently join not supported");
+    } else {
+      return command.highlightedStream(query, filterQuery, limit, sort, fields, scoreMode, field, fragSize, maxFragments, parallel);
+    }
+  }
+
+  public Stream<ImmutablePair<String,List<Document>>> toGroupStream() throws IOException {
+    Preconditions.checkNotNull(command);
+    Preconditions.checkNotNull(groupField);
+    if (joined()) {
+      throw new UnsupportedOperationException("currently join not supported");
+    } else {
+      return command.groupingDocumentStream(groupField, groupSort, query, filterQuery, groupOffset, groupLimit, groupDocsLimit, sortWithinGroup, fields, parallel);
     }
   }
 
@@ -92,19 +234,23 @@ public class LQuery {
 
   public Stream<Document> toDocumentStream() throws IOException {
     Preconditions.checkNotNull(command);
-    if ((fromCommand != null) && (fromField != null)) {
-      return command.joinStream(query, filterQuery, limit, sort, fields, fromCommand, fromField, toField, fromQuery, fromFilterQuery);
+    if (blockFromChildren != null) {
+      return command.blockJoinStream(query, filterQuery, limit, sort, fields, blockFromChildren, fromQuery, fromFilterQuery, joinScoreMode, scoreMode, parallel);
+    } else if ((fromCommand != null) && (fromField != null)) {
+      return command.joinStream(query, filterQuery, limit, sort, fields, fromCommand, fromField, toField, fromQuery, fromFilterQuery, joinScoreMode, scoreMode, parallel);
     } else {
-      return command.documentStream(query, filterQuery, limit, sort, fields);
+      return command.documentStream(query, filterQuery, limit, sort, fields, scoreMode, parallel);
     }
   }
 
   public Stream<ImmutablePair<ScoreDoc,Document>> toDocumentPairStream() throws IOException {
     Preconditions.checkNotNull(command);
-    if ((fromCommand != null) && (fromField != null)) {
-      throw new UnsupportedOperationException("currently join not supported");
+    if (blockFromChildren != null) {
+      return command.blockJoinPairStream(query, filterQuery, limit, sort, fields, blockFromChildren, fromQuery, fromFilterQuery, joinScoreMode, scoreMode, parallel);
+    } else if ((fromCommand != null) && (fromField != null)) {
+      return command.joinPairStream(query, filterQuery, limit, sort, fields, fromCommand, fromField, toField, fromQuery, fromFilterQuery, joinScoreMode, scoreMode, parallel);
     } else {
-      return command.documentPairStream(query, filterQuery, limit, sort, fields);
+      return command.documentPairStream(query, filterQuery, limit, sort, fields, scoreMode, parallel);
     }
   }
 
@@ -0,0 +1,14 @@
+package org.apache.lucene.lclient;
+
+public enum LRefreshPolicy {
+
+  // the caller refreshes or commits
+  NONE,
+
+  // refresh once all documents are written
+  REFRESH,
+
+  // commit and refresh once all documents are written
+  COMMIT
+
+}
@@ -1,8 +1,10 @@
 package org.apache.lucene.lclient;
 
+import java.lang.ref.WeakReference;
 import java.text.NumberFormat;
 import java.util.Locale;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.core.KeywordAnalyzer;
@@ -16,26 +18,42 @@ import com.google.common.collect.Maps;
 public final class LSchema {
 
   private static final NumberFormat NUMBER_FORMAT = NumberFormat.getNumberInstance(Locale.ROOT);
+  // a template references its schema, so it is held weakly, and the schemas are weak keys: a pool thread that once
+  // wrote a template doesn't keep its schema alive.
+  private static final ThreadLocal<Map<LSchema,WeakReference<LDocument>>> TEMPLATES = ThreadLocal.withInitial(WeakHashMap::new);
 
   private String defaultField;
   private String uniqueKey;
+  private boolean appendOnly;
+  private LSyncPolicy writeAheadLog;
   private Map<String,FieldType> fieldMap = Maps.newHashMap();
   private Analyzer indexAnalyzer;
   private Analyzer queryAnalyzer;
   private Map<String,NumericConfig> numericConfigMap = Maps.newHashMap();
+  private Map<String,LHighlightMode> highlightModes = Maps.newHashMap();
+  private Map<String,FieldAppender> appenders = Maps.newHashMap();
 
               LSchema(String defaultField,
                      String uniqueKey,
+                     boolean appendOnly,
+                     LSyncPolicy writeAheadLog,
                      Map<String,FieldType> fieldMap,
                      Analyzer indexAnalyzer,
                      Analyzer queryAnalyzer,
-                     Map<String,NumericConfig> numericConfigMap) {
+                     Map<String,NumericConfig> numericConfigMap,
+                     Map<String,LHighlightMode> highlightModes) {
     this.defaultField = defaultField;
     this.uniqueKey = uniqueKey;
+    this.appendOnly = appendOnly;
+    this.writeAheadLog = writeAheadLog;
     this.fieldMap = fieldMap;
     this.indexAnalyzer = indexAnalyzer;
     this.queryAnalyzer = queryAnalyzer;
     this.numericConfigMap = numericConfigMap;
+    this.highlightModes = highlightModes;
+    for (Map.Entry<String,FieldType> entry : fieldMap.entrySet()) {
+      appenders.put(entry.getKey(), FieldAppender.of(entry.getKey(), entry.getValue(), getHighlightMode(entry.getKey())));
+    }
   }
 
   public static Builder Builder() {
@@ -50,10 +68,45 @@ public final class LSchema {
     return Preconditions.checkNotNull(uniqueKey);
   }
 
+  // keys are unique by construction, so bulk loads add documents without deleting by key first.
+  public boolean isAppendOnly() {
+    return appendOnly;
+  }
+
+  // null unless changes are logged before they are applied, and replayed when the collection is opened.
+  public LSyncPolicy getWriteAheadLog() {
+    return writeAheadLog;
+  }
+
+  boolean hasField(String name) {
+    return fieldMap.containsKey(name);
+  }
+
   public FieldType getFieldType(String name) {
     return Preconditions.checkNotNull(fieldMap.get(name));
   }
 
+  FieldAppender getAppender(String name) {
+    return Preconditions.checkNotNull(appenders.get(name));
+  }
+
+  // the calling thread's template, emptied for the next document. one collected while unused is created again.
+  LDocument template() {
+    Map<LSchema,WeakReference<LDocument>> templates = TEMPLATES.get();
+    WeakReference<LDocument> reference = templates.get(this);
+    LDocument template = (reference != null) ? reference.get() : null;
+    if (template == null) {
+      template = new LDocument(this, /* reusable */ true);
+      templates.put(this, new WeakReference<>(template));
+    }
+    return template.reset();
+  }
+
+  // TEXT fields default to TERM_VECTORS
+  public LHighlightMode getHighlightMode(String name) {
+    return highlightModes.getOrDefault(name, LHighlightMode.TERM_VECTORS);
+  }
+
   public Analyzer getIndexAnalyzer() {
     return indexAnalyzer;
   }
@@ -72,10 +125,13 @@ public final class LSchema {
     private Analyzer defaultQueryAnalyzer = new KeywordAnalyzer();
     private String defaultField = "text";
     private String uniqueKey;
+    private boolean appendOnly = false;
+    private LSyncPolicy writeAheadLog;
     private Map<String,Analyzer> fieldIndexAnalyzers = Maps.newHashMap();
     private Map<String,Analyzer> fieldQueryAnalyzers = Maps.newHashMap();
     private Map<String,FieldType> fieldMap = Maps.newHashMap();
     private Map<String,NumericConfig> numericConfigMap = Maps.newHashMap();
+    private Map<String,LHighlightMode> highlightModes = Maps.newHashMap();
 
     public Builder() { }
 
@@ -99,6 +155,16 @@ public final class LSchema {
       return this;
     }
 
+    public Builder setAppendOnly(boolean appendOnly) {
+      this.appendOnly = appendOnly;
+      return this;
+    }
+
+    public Builder setWriteAheadLog(LSyncPolicy syncPolicy) {
+      this.writeAheadLog = syncPolicy;
+      return this;
+    }
+
     public Builder addField(String name, FieldType dataType) {
       fieldMap.put(name, dataType);
       if (dataType.numericType() != null) {
@@ -118,14 +184,26 @@ public final class LSchema {
       return this;
     }
 
+    // switching the mode of a field that already has documents needs a reindex of the collection.
+    public Builder addField(String name, FieldType dataType, Analyzer indexAnalyzer, Analyzer queryAnalyzer, LHighlightMode highlightMode) {
+      if (dataType.equals(LDataType.TEXT)) {
+        highlightModes.put(name, Preconditions.checkNotNull(highlightMode));
+        addField(name, dataType, indexAnalyzer, queryAnalyzer);
+      }
+      return this;
+    }
+
     public LSchema build() {
       return new LSchema(
         defaultField,
         uniqueKey,
+        appendOnly,
+        writeAheadLog,
         fieldMap,
         new PerFieldAnalyzerWrapper(defaultIndexAnalyzer, fieldIndexAnalyzers),
         new PerFieldAnalyzerWrapper(defaultQueryAnalyzer, fieldQueryAnalyzers),
-        numericConfigMap
+        numericConfigMap,
+        highlightModes
       );
     }
 
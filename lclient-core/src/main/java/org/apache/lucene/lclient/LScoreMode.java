@@ -0,0 +1,9 @@
+package org.apache.lucene.lclient;
+
+public enum LScoreMode {
+
+  SCORE,
+
+  NO_SCORE
+
+}
@@ -0,0 +1,61 @@
+package org.apache.lucene.lclient;
+
+import com.google.common.base.Preconditions;
+
+public final class LStats {
+
+  private final long count;
+  private final Long longSum;
+  private final double sum;
+  private final double min;
+  private final double max;
+
+  LStats(long count, double sum, double min, double max) {
+    this.count = count;
+    this.longSum = null;
+    this.sum = sum;
+    this.min = min;
+    this.max = max;
+  }
+
+  LStats(long count, long longSum, double min, double max) {
+    this.count = count;
+    this.longSum = longSum;
+    this.sum = longSum;
+    this.min = min;
+    this.max = max;
+  }
+
+  public long count() {
+    return count;
+  }
+
+  public double sum() {
+    return sum;
+  }
+
+  // the exact sum of an int or long field.
+  public long longSum() {
+    Preconditions.checkState(longSum != null, "sum of a floating point field has no exact long value");
+    return longSum;
+  }
+
+  // NaN when no matching document has a value.
+  public double min() {
+    return (count == 0) ? Double.NaN : min;
+  }
+
+  public double max() {
+    return (count == 0) ? Double.NaN : max;
+  }
+
+  public double avg() {
+    return (count == 0) ? Double.NaN : sum / count;
+  }
+
+  @Override
+  public String toString() {
+    return "LStats(count=" + count + ", sum=" + sum + ", min=" + min() + ", max=" + max() + ", avg=" + avg() + ")";
+  }
+
+}
@@ -0,0 +1,14 @@
+package org.apache.lucene.lclient;
+
+public enum LSyncPolicy {
+
+  // fsync every record before the change is applied
+  ALWAYS,
+
+  // fsync within LConnection.WAL_SYNC_INTERVAL_MILLIS of an append, a crash may lose the records of the last interval
+  INTERVAL,
+
+  // leave it to the OS, records survive a process crash but not a machine crash
+  NEVER
+
+}
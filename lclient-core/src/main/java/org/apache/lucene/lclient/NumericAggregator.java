@@ -0,0 +1,139 @@
+package org.apache.lucene.lclient;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.util.Bits;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+// one collector per slice accumulates every field in a single pass, reduce merges the slices.
+final class NumericAggregator implements Collector {
+
+  private final String[] fields;
+  private final FieldType[] types;
+  private final long[] count;
+  private final long[] longSum;
+  private final double[] sum;
+  private final double[] min;
+  private final double[] max;
+
+  private NumericAggregator(String[] fields, FieldType[] types) {
+    this.fields = fields;
+    this.types = types;
+    this.count = new long[fields.length];
+    this.longSum = new long[fields.length];
+    this.sum = new double[fields.length];
+    this.min = new double[fields.length];
+    this.max = new double[fields.length];
+    Arrays.fill(min, Double.POSITIVE_INFINITY);
+    Arrays.fill(max, Double.NEGATIVE_INFINITY);
+  }
+
+  static CollectorManager<NumericAggregator,Map<String,LStats>> manager(LSchema schema, String[] fields) {
+    FieldType[] types = new FieldType[fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      FieldType type = schema.getFieldType(fields[i]);
+      Preconditions.checkArgument(type.numericType() != null, "field %s is not numeric", fields[i]);
+      types[i] = type;
+    }
+    return new CollectorManager<NumericAggregator,Map<String,LStats>>() {
+      @Override
+      public NumericAggregator newCollector() {
+        return new NumericAggregator(fields, types);
+      }
+
+      @Override
+      public Map<String,LStats> reduce(Collection<NumericAggregator> collectors) {
+        Map<String,LStats> stats = Maps.newLinkedHashMap();
+        for (int i = 0; i < fields.length; i++) {
+          long count = 0, longSum = 0;
+          double sum = 0, min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+          for (NumericAggregator collector : collectors) {
+            count += collector.count[i];
+            longSum = Math.addExact(longSum, collector.longSum[i]);
+            sum += collector.sum[i];
+            min = Math.min(min, collector.min[i]);
+            max = Math.max(max, collector.max[i]);
+          }
+          stats.put(fields[i], integral(types[i]) ? new LStats(count, longSum, min, max) : new LStats(count, sum, min, max));
+        }
+        return stats;
+      }
+    };
+  }
+
+  @Override
+  public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+    LeafReader reader = context.reader();
+    NumericDocValues[] values = new NumericDocValues[fields.length];
+    Bits[] docsWithField = new Bits[fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      values[i] = reader.getNumericDocValues(fields[i]);
+      docsWithField[i] = reader.getDocsWithField(fields[i]);
+    }
+    return new LeafCollector() {
+      @Override
+      public void setScorer(Scorer scorer) { }
+
+      @Override
+      public void collect(int doc) {
+        for (int i = 0; i < fields.length; i++) {
+          if ((values[i] == null) || !docsWithField[i].get(doc)) {
+            continue;
+          }
+          long bits = values[i].get(doc);
+          double value = decode(types[i], bits);
+          count[i]++;
+          if (integral(types[i])) {
+            longSum[i] = Math.addExact(longSum[i], bits);
+          } else {
+            sum[i] += value;
+          }
+          if (value < min[i]) min[i] = value;
+          if (value > max[i]) max[i] = value;
+        }
+      }
+    };
+  }
+
+  @Override
+  public boolean needsScores() {
+    return false;
+  }
+
+  // a double sum drops the low bits of longs past 2^53, so ints and longs are summed exactly and fail on overflow.
+  private static boolean integral(FieldType type) {
+    switch (type.numericType()) {
+      case INT:
+      case LONG:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  // LDocument stores doubles and floats as their raw bits.
+  private static double decode(FieldType type, long bits) {
+    switch (type.numericType()) {
+      case DOUBLE:
+        return Double.longBitsToDouble(bits);
+      case FLOAT:
+        return Float.intBitsToFloat((int) bits);
+      default:
+        return bits;
+    }
+  }
+
+}
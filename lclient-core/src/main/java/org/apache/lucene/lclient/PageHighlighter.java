@@ -0,0 +1,126 @@
+package org.apache.lucene.lclient;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.postingshighlight.DefaultPassageFormatter;
+import org.apache.lucene.search.postingshighlight.Passage;
+import org.apache.lucene.search.postingshighlight.PassageFormatter;
+import org.apache.lucene.search.postingshighlight.PostingsHighlighter;
+import org.apache.lucene.search.vectorhighlight.FastVectorHighlighter;
+import org.apache.lucene.search.vectorhighlight.FieldQuery;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+
+// the query is flattened into a FieldQuery once and shared by every hit of every page it highlights.
+// fields in POSTINGS mode are highlighted from offsets in the postings, passages are sentences there and fragSize is ignored.
+final class PageHighlighter {
+
+  private static final int CHUNK_SIZE = 16;
+  private static final String ELLIPSIS = " ... ";
+  private static final Joiner FRAGMENTS = Joiner.on(ELLIPSIS).skipNulls();
+
+  private static final FastVectorHighlighter VECTORS = new FastVectorHighlighter();
+  private static final PostingsHighlighter POSTINGS = new PostingsHighlighter() {
+    private final PassageFormatter formatter = new DefaultPassageFormatter("<b>", "</b>", ELLIPSIS, false);
+
+    @Override
+    protected PassageFormatter getFormatter(String field) {
+      return formatter;
+    }
+
+    // a hit without a match gets no fragment, as with term vectors
+    @Override
+    protected Passage[] getEmptyHighlight(String fieldName, BreakIterator bi, int maxPassages) {
+      return new Passage[0];
+    }
+  };
+
+  private final Query query;
+  private final FieldQuery fieldQuery;
+  private final IndexSearcher searcher;
+  private final String field;
+  private final int fragSize;
+  private final int maxFragments;
+  private final ExecutorService executor;
+
+  PageHighlighter(LSchema schema, Query query, IndexSearcher searcher, String field, int fragSize, int maxFragments, ExecutorService executor) throws IOException {
+    this.query = query;
+    this.fieldQuery = (schema.getHighlightMode(field) == LHighlightMode.POSTINGS) ?
+      null : VECTORS.getFieldQuery(query, searcher.getIndexReader());
+    this.searcher = searcher;
+    this.field = field;
+    this.fragSize = fragSize;
+    this.maxFragments = maxFragments;
+    this.executor = executor;
+  }
+
+  // fragments come back in the order of hits, the hits themselves are visited in docID order.
+  String[] highlight(ScoreDoc[] hits) throws IOException {
+    Integer[] order = new Integer[hits.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Integer.compare(hits[a].doc, hits[b].doc));
+    String[] fragments = new String[hits.length];
+    if (executor == null || hits.length <= CHUNK_SIZE) {
+      highlight(hits, order, 0, order.length, fragments);
+      return fragments;
+    }
+    // each chunk is a contiguous docID range, so term vectors are still read forward within a task.
+    List<Future<Void>> futures = new ArrayList<>();
+    for (int from = 0; from < order.length; from += CHUNK_SIZE) {
+      int start = from;
+      int end = Math.min(from + CHUNK_SIZE, order.length);
+      futures.add(executor.submit(() -> {
+        highlight(hits, order, start, end, fragments);
+        return null;
+      }));
+    }
+    try {
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      futures.forEach(future -> future.cancel(true));
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(e.getMessage());
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), IOException.class);
+      throw Throwables.propagate(e.getCause());
+    }
+    return fragments;
+  }
+
+  private void highlight(ScoreDoc[] hits, Integer[] order, int from, int to, String[] fragments) throws IOException {
+    if (fieldQuery == null) {
+      int[] docIds = new int[to - from];
+      for (int i = from; i < to; i++) {
+        docIds[i - from] = hits[order[i]].doc;
+      }
+      String[] highlights = POSTINGS.highlightFields(new String[] { field }, query, searcher, docIds, new int[] { maxFragments }).get(field);
+      for (int i = from; i < to; i++) {
+        fragments[order[i]] = Strings.nullToEmpty(highlights[i - from]);
+      }
+      return;
+    }
+    for (int i = from; i < to; i++) {
+      int hit = order[i];
+      String[] bestFragments = VECTORS.getBestFragments(fieldQuery, searcher.getIndexReader(), hits[hit].doc, field, fragSize, maxFragments);
+      fragments[hit] = FRAGMENTS.join(bestFragments);
+    }
+  }
+
+}
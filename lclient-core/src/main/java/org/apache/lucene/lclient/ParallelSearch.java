@@ -0,0 +1,68 @@
+package org.apache.lucene.lclient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.IndexSearcher.LeafSlice;
+
+import com.google.common.base.Preconditions;
+
+final class ParallelSearch {
+
+  private final ExecutorService executor;
+  private final int minDocsPerSlice;
+
+  ParallelSearch(ExecutorService executor, int minDocsPerSlice) {
+    Preconditions.checkArgument(minDocsPerSlice > 0, "minDocsPerSlice must be > 0");
+    this.executor = Preconditions.checkNotNull(executor);
+    this.minDocsPerSlice = minDocsPerSlice;
+  }
+
+  ExecutorService executor() {
+    return executor;
+  }
+
+  // a reader too small for two slices is searched on the caller's thread.
+  IndexSearcher wrap(IndexSearcher searcher) {
+    IndexReader reader = searcher.getIndexReader();
+    if (reader.leaves().size() < 2 || reader.maxDoc() < 2 * minDocsPerSlice) {
+      return searcher;
+    }
+    final int minDocs = minDocsPerSlice;
+    IndexSearcher parallel = new IndexSearcher(reader, executor) {
+      // captured locals are assigned before IndexSearcher's constructor calls slices()
+      @Override
+      protected LeafSlice[] slices(List<LeafReaderContext> leaves) {
+        return ParallelSearch.slices(leaves, minDocs);
+      }
+    };
+    parallel.setSimilarity(searcher.getSimilarity());
+    return parallel;
+  }
+
+  // neighbouring segments are packed together until a slice holds minDocsPerSlice docs. slices keep docBase order:
+  // TopDocs.merge breaks ties by slice index while searchAfter resumes from the global doc id, so both must agree.
+  static LeafSlice[] slices(List<LeafReaderContext> leaves, int minDocsPerSlice) {
+    List<LeafSlice> slices = new ArrayList<>();
+    List<LeafReaderContext> group = new ArrayList<>();
+    int docs = 0;
+    for (LeafReaderContext leaf : leaves) {
+      group.add(leaf);
+      docs += leaf.reader().maxDoc();
+      if (docs >= minDocsPerSlice) {
+        slices.add(new LeafSlice(group.toArray(new LeafReaderContext[group.size()])));
+        group.clear();
+        docs = 0;
+      }
+    }
+    if (!group.isEmpty()) {
+      slices.add(new LeafSlice(group.toArray(new LeafReaderContext[group.size()])));
+    }
+    return slices.toArray(new LeafSlice[slices.size()]);
+  }
+
+}
@@ -0,0 +1,78 @@
+package org.apache.lucene.lclient;
+
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.lucene.search.Query;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+final class ParsedQueryCache {
+
+  private final Cache<Key,Optional<Query>> cache;
+
+  ParsedQueryCache(long maximumSize) {
+    this.cache = CacheBuilder.newBuilder()
+      .maximumSize(maximumSize)
+      .recordStats()
+      .build();
+  }
+
+  // cached queries are shared between threads and must not be modified by callers.
+  // a failed parse is memoized as absent, so a bad query string is parsed only once.
+  Query get(LSchema schema, String queryString, Callable<Query> parser) {
+    Key key = new Key(schema, queryString, schema.getDefaultField());
+    try {
+      return cache.get(key, () -> Optional.fromNullable(parser.call())).orNull();
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  CacheStats stats() {
+    return cache.stats();
+  }
+
+  long size() {
+    return cache.size();
+  }
+
+  void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  private static final class Key {
+
+    private final LSchema schema;
+    private final String queryString;
+    private final String defaultField;
+
+    Key(LSchema schema, String queryString, String defaultField) {
+      this.schema = schema;
+      this.queryString = queryString;
+      this.defaultField = defaultField;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof Key)) return false;
+      Key other = (Key) obj;
+      return schema == other.schema
+          && queryString.equals(other.queryString)
+          && Objects.equals(defaultField, other.defaultField);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(schema), queryString, defaultField);
+    }
+
+  }
+
+}
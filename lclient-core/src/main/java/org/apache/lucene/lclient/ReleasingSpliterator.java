@@ -0,0 +1,104 @@
+package org.apache.lucene.lclient;
+
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+final class ReleasingSpliterator<T> implements Spliterator<T> {
+
+  private final Spliterator<T> in;
+  private final Release release;
+  private boolean exhausted;
+
+  private ReleasingSpliterator(Spliterator<T> in, Release release) {
+    this.in = in;
+    this.release = release;
+  }
+
+  // runs onRelease once, when every split part is exhausted or when the stream is closed.
+  static <T> Stream<T> stream(Stream<T> stream, Runnable onRelease) {
+    Release release = new Release(onRelease);
+    Spliterator<T> spliterator = new ReleasingSpliterator<>(stream.spliterator(), release);
+    return StreamSupport.stream(spliterator, stream.isParallel()).onClose(release::run);
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super T> action) {
+    if (exhausted) {
+      return false;
+    }
+    boolean advanced = false;
+    try {
+      advanced = in.tryAdvance(action);
+    } finally {
+      if (!advanced) exhaust();
+    }
+    return advanced;
+  }
+
+  @Override
+  public void forEachRemaining(Consumer<? super T> action) {
+    if (exhausted) {
+      return;
+    }
+    try {
+      in.forEachRemaining(action);
+    } finally {
+      exhaust();
+    }
+  }
+
+  @Override
+  public Spliterator<T> trySplit() {
+    if (exhausted) {
+      return null;
+    }
+    Spliterator<T> split = in.trySplit();
+    if (split == null) {
+      return null;
+    }
+    release.parts.incrementAndGet();
+    return new ReleasingSpliterator<>(split, release);
+  }
+
+  @Override
+  public long estimateSize() {
+    return in.estimateSize();
+  }
+
+  // not SIZED, so count() runs through the parts and releases on exhaustion instead of only reading the size.
+  @Override
+  public int characteristics() {
+    return in.characteristics() & ~(Spliterator.SIZED | Spliterator.SUBSIZED);
+  }
+
+  private void exhaust() {
+    exhausted = true;
+    if (release.parts.decrementAndGet() == 0) {
+      release.run();
+    }
+  }
+
+  private static final class Release implements Runnable {
+
+    private final Runnable onRelease;
+    private final AtomicInteger parts = new AtomicInteger(1);
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    Release(Runnable onRelease) {
+      this.onRelease = onRelease;
+    }
+
+    @Override
+    public void run() {
+      if (released.compareAndSet(false, true)) {
+        onRelease.run();
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,253 @@
+package org.apache.lucene.lclient;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+// closes the stream when a terminal operation returns, so findFirst(), anyMatch() or limit() release the searcher
+// without the caller closing it. iterator(), spliterator() and primitive streams still release it once they are
+// exhausted or closed.
+final class ReleasingStream<T> implements Stream<T> {
+
+  private final Stream<T> in;
+
+  private ReleasingStream(Stream<T> in) {
+    this.in = in;
+  }
+
+  static <T> Stream<T> of(Stream<T> in) {
+    return new ReleasingStream<>(in);
+  }
+
+  private <R> R terminal(Supplier<R> operation) {
+    try {
+      return operation.get();
+    } finally {
+      in.close();
+    }
+  }
+
+  @Override
+  public Stream<T> filter(Predicate<? super T> predicate) {
+    return of(in.filter(predicate));
+  }
+
+  @Override
+  public <R> Stream<R> map(Function<? super T,? extends R> mapper) {
+    return of(in.map(mapper));
+  }
+
+  @Override
+  public IntStream mapToInt(ToIntFunction<? super T> mapper) {
+    return in.mapToInt(mapper);
+  }
+
+  @Override
+  public LongStream mapToLong(ToLongFunction<? super T> mapper) {
+    return in.mapToLong(mapper);
+  }
+
+  @Override
+  public DoubleStream mapToDouble(ToDoubleFunction<? super T> mapper) {
+    return in.mapToDouble(mapper);
+  }
+
+  @Override
+  public <R> Stream<R> flatMap(Function<? super T,? extends Stream<? extends R>> mapper) {
+    return of(in.flatMap(mapper));
+  }
+
+  @Override
+  public IntStream flatMapToInt(Function<? super T,? extends IntStream> mapper) {
+    return in.flatMapToInt(mapper);
+  }
+
+  @Override
+  public LongStream flatMapToLong(Function<? super T,? extends LongStream> mapper) {
+    return in.flatMapToLong(mapper);
+  }
+
+  @Override
+  public DoubleStream flatMapToDouble(Function<? super T,? extends DoubleStream> mapper) {
+    return in.flatMapToDouble(mapper);
+  }
+
+  @Override
+  public Stream<T> distinct() {
+    return of(in.distinct());
+  }
+
+  @Override
+  public Stream<T> sorted() {
+    return of(in.sorted());
+  }
+
+  @Override
+  public Stream<T> sorted(Comparator<? super T> comparator) {
+    return of(in.sorted(comparator));
+  }
+
+  @Override
+  public Stream<T> peek(Consumer<? super T> action) {
+    return of(in.peek(action));
+  }
+
+  @Override
+  public Stream<T> limit(long maxSize) {
+    return of(in.limit(maxSize));
+  }
+
+  @Override
+  public Stream<T> skip(long n) {
+    return of(in.skip(n));
+  }
+
+  @Override
+  public void forEach(Consumer<? super T> action) {
+    terminal(() -> {
+      in.forEach(action);
+      return null;
+    });
+  }
+
+  @Override
+  public void forEachOrdered(Consumer<? super T> action) {
+    terminal(() -> {
+      in.forEachOrdered(action);
+      return null;
+    });
+  }
+
+  @Override
+  public Object[] toArray() {
+    return terminal(() -> in.toArray());
+  }
+
+  @Override
+  public <A> A[] toArray(IntFunction<A[]> generator) {
+    return terminal(() -> in.toArray(generator));
+  }
+
+  @Override
+  public T reduce(T identity, BinaryOperator<T> accumulator) {
+    return terminal(() -> in.reduce(identity, accumulator));
+  }
+
+  @Override
+  public Optional<T> reduce(BinaryOperator<T> accumulator) {
+    return terminal(() -> in.reduce(accumulator));
+  }
+
+  @Override
+  public <U> U reduce(U identity, BiFunction<U,? super T,U> accumulator, BinaryOperator<U> combiner) {
+    return terminal(() -> in.reduce(identity, accumulator, combiner));
+  }
+
+  @Override
+  public <R> R collect(Supplier<R> supplier, BiConsumer<R,? super T> accumulator, BiConsumer<R,R> combiner) {
+    return terminal(() -> in.collect(supplier, accumulator, combiner));
+  }
+
+  @Override
+  public <R,A> R collect(Collector<? super T,A,R> collector) {
+    return terminal(() -> in.collect(collector));
+  }
+
+  @Override
+  public Optional<T> min(Comparator<? super T> comparator) {
+    return terminal(() -> in.min(comparator));
+  }
+
+  @Override
+  public Optional<T> max(Comparator<? super T> comparator) {
+    return terminal(() -> in.max(comparator));
+  }
+
+  @Override
+  public long count() {
+    return terminal(() -> in.count());
+  }
+
+  @Override
+  public boolean anyMatch(Predicate<? super T> predicate) {
+    return terminal(() -> in.anyMatch(predicate));
+  }
+
+  @Override
+  public boolean allMatch(Predicate<? super T> predicate) {
+    return terminal(() -> in.allMatch(predicate));
+  }
+
+  @Override
+  public boolean noneMatch(Predicate<? super T> predicate) {
+    return terminal(() -> in.noneMatch(predicate));
+  }
+
+  @Override
+  public Optional<T> findFirst() {
+    return terminal(() -> in.findFirst());
+  }
+
+  @Override
+  public Optional<T> findAny() {
+    return terminal(() -> in.findAny());
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return in.iterator();
+  }
+
+  @Override
+  public Spliterator<T> spliterator() {
+    return in.spliterator();
+  }
+
+  @Override
+  public boolean isParallel() {
+    return in.isParallel();
+  }
+
+  @Override
+  public Stream<T> sequential() {
+    return of(in.sequential());
+  }
+
+  @Override
+  public Stream<T> parallel() {
+    return of(in.parallel());
+  }
+
+  @Override
+  public Stream<T> unordered() {
+    return of(in.unordered());
+  }
+
+  @Override
+  public Stream<T> onClose(Runnable closeHandler) {
+    return of(in.onClose(closeHandler));
+  }
+
+  @Override
+  public void close() {
+    in.close();
+  }
+
+}
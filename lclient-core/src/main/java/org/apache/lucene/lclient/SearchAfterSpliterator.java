@@ -0,0 +1,79 @@
+package org.apache.lucene.lclient;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopFieldDocs;
+
+final class SearchAfterSpliterator extends Spliterators.AbstractSpliterator<ScoreDoc> {
+
+  private final IndexSearcher searcher;
+  private final Query query;
+  private final Sort sort;
+  private final boolean doDocScores;
+  private final int pageSize;
+  private int remaining;
+
+  private ScoreDoc[] page;
+  private int index;
+  private boolean exhausted;
+
+  private SearchAfterSpliterator(IndexSearcher searcher, Query query, Sort sort, LScoreMode scoreMode, int limit, int pageSize, TopFieldDocs first) {
+    super(Math.min(first.totalHits, limit), Spliterator.ORDERED | Spliterator.NONNULL);
+    this.searcher = searcher;
+    this.query = query;
+    this.sort = sort;
+    this.doDocScores = (scoreMode == LScoreMode.SCORE);
+    this.pageSize = pageSize;
+    this.remaining = limit;
+    accept(first, Math.min(pageSize, limit));
+  }
+
+  static SearchAfterSpliterator open(IndexSearcher searcher, Query query, Sort sort, LScoreMode scoreMode, int limit, int pageSize) throws IOException {
+    int n = Math.max(1, Math.min(pageSize, limit));
+    TopFieldDocs first = searcher.searchAfter(null, query, n, sort,
+                                              scoreMode == LScoreMode.SCORE, /* doMaxScore */ false);
+    return new SearchAfterSpliterator(searcher, query, sort, scoreMode, Math.max(0, limit), pageSize, first);
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super ScoreDoc> action) {
+    if (remaining <= 0) {
+      return false;
+    }
+    if (index >= page.length) {
+      try {
+        if (!fetch()) return false;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    remaining--;
+    action.accept(page[index++]);
+    return true;
+  }
+
+  private boolean fetch() throws IOException {
+    if (exhausted) {
+      return false;
+    }
+    int n = Math.min(pageSize, remaining);
+    TopFieldDocs results = searcher.searchAfter(page[page.length - 1], query, n, sort, doDocScores, /* doMaxScore */ false);
+    accept(results, n);
+    return page.length > 0;
+  }
+
+  private void accept(TopFieldDocs results, int requested) {
+    page = results.scoreDocs;
+    index = 0;
+    exhausted = (page.length < requested);
+  }
+
+}
@@ -0,0 +1,122 @@
+package org.apache.lucene.lclient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.index.CodecReader;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.MergeTrigger;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.SlowCodecReaderWrapper;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.uninverting.UninvertingReader;
+
+// every merge writes the unique key of legacy segments as real doc values, and a forced merge also rewrites
+// legacy segments the wrapped policy would leave alone, so LCommand.migrateUniqueKey() needs no full merge.
+final class UniqueKeyMergePolicy extends MergePolicy {
+
+  private final MergePolicy in;
+  private final Map<String,UninvertingReader.Type> mapping;
+
+  UniqueKeyMergePolicy(MergePolicy in, LSchema schema) {
+    this.in = in;
+    this.mapping = UniqueKeyReader.mapping(schema);
+  }
+
+  @Override
+  public MergeSpecification findMerges(MergeTrigger mergeTrigger, SegmentInfos segmentInfos, IndexWriter writer) throws IOException {
+    return upgrading(in.findMerges(mergeTrigger, segmentInfos, writer));
+  }
+
+  @Override
+  public MergeSpecification findForcedMerges(SegmentInfos segmentInfos, int maxSegmentCount, Map<SegmentCommitInfo,Boolean> segmentsToMerge, IndexWriter writer) throws IOException {
+    MergeSpecification spec = upgrading(in.findForcedMerges(segmentInfos, maxSegmentCount, segmentsToMerge, writer));
+    if (mapping.isEmpty()) {
+      return spec;
+    }
+    Set<SegmentCommitInfo> merging = new HashSet<>(writer.getMergingSegments());
+    if (spec != null) {
+      for (OneMerge merge : spec.merges) {
+        merging.addAll(merge.segments);
+      }
+    }
+    for (SegmentCommitInfo info : segmentsToMerge.keySet()) {
+      if (!merging.contains(info) && UniqueKeyReader.isLegacy(fieldInfos(info), mapping)) {
+        if (spec == null) {
+          spec = new MergeSpecification();
+        }
+        spec.add(new UpgradingMerge(Collections.singletonList(info)));
+      }
+    }
+    return spec;
+  }
+
+  @Override
+  public MergeSpecification findForcedDeletesMerges(SegmentInfos segmentInfos, IndexWriter writer) throws IOException {
+    return upgrading(in.findForcedDeletesMerges(segmentInfos, writer));
+  }
+
+  @Override
+  public boolean useCompoundFile(SegmentInfos infos, SegmentCommitInfo mergedInfo, IndexWriter writer) throws IOException {
+    return in.useCompoundFile(infos, mergedInfo, writer);
+  }
+
+  private MergeSpecification upgrading(MergeSpecification spec) {
+    if (spec == null || mapping.isEmpty()) {
+      return spec;
+    }
+    MergeSpecification upgrading = new MergeSpecification();
+    for (OneMerge merge : spec.merges) {
+      upgrading.add(new UpgradingMerge(merge.segments));
+    }
+    return upgrading;
+  }
+
+  // read the way SegmentReader opens them, without opening the rest of the segment.
+  private static FieldInfos fieldInfos(SegmentCommitInfo info) throws IOException {
+    Codec codec = info.info.getCodec();
+    if (info.hasFieldUpdates()) {
+      String suffix = Long.toString(info.getFieldInfosGen(), Character.MAX_RADIX);
+      return codec.fieldInfosFormat().read(info.info.dir, info.info, suffix, IOContext.READONCE);
+    }
+    if (info.info.getUseCompoundFile()) {
+      try (Directory cfs = codec.compoundFormat().getCompoundReader(info.info.dir, info.info, IOContext.READONCE)) {
+        return codec.fieldInfosFormat().read(cfs, info.info, "", IOContext.READONCE);
+      }
+    }
+    return codec.fieldInfosFormat().read(info.info.dir, info.info, "", IOContext.READONCE);
+  }
+
+  private final class UpgradingMerge extends OneMerge {
+
+    private List<CodecReader> readers;
+
+    UpgradingMerge(List<SegmentCommitInfo> segments) {
+      super(segments);
+    }
+
+    @Override
+    public List<CodecReader> getMergeReaders() throws IOException {
+      if (readers == null) {
+        readers = new ArrayList<>();
+        for (CodecReader reader : super.getMergeReaders()) {
+          readers.add(UniqueKeyReader.isLegacy(reader.getFieldInfos(), mapping) ?
+            SlowCodecReaderWrapper.wrap(new UninvertingReader(reader, mapping)) : reader);
+        }
+      }
+      return readers;
+    }
+
+  }
+
+}
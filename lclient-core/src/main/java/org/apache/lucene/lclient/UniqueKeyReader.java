@@ -0,0 +1,80 @@
+package org.apache.lucene.lclient;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.FilterDirectoryReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.uninverting.UninvertingReader;
+
+import com.google.common.collect.ImmutableMap;
+
+// uninverts the unique key only in legacy segments, written before the key got doc values of its own.
+final class UniqueKeyReader extends FilterDirectoryReader {
+
+  private final Map<String,UninvertingReader.Type> mapping;
+
+  private UniqueKeyReader(DirectoryReader in, Map<String,UninvertingReader.Type> mapping) throws IOException {
+    super(in, new SubReaderWrapper() {
+      @Override
+      public LeafReader wrap(LeafReader reader) {
+        return isLegacy(reader.getFieldInfos(), mapping) ? new UninvertingReader(reader, mapping) : reader;
+      }
+    });
+    this.mapping = mapping;
+  }
+
+  // a collection without legacy segments, or with a TEXT key, is searched unwrapped.
+  static DirectoryReader wrap(DirectoryReader in, LSchema schema) throws IOException {
+    Map<String,UninvertingReader.Type> mapping = mapping(schema);
+    return mapping.isEmpty() ? in : new UniqueKeyReader(in, mapping);
+  }
+
+  @Override
+  protected DirectoryReader doWrapDirectoryReader(DirectoryReader in) throws IOException {
+    return new UniqueKeyReader(in, mapping);
+  }
+
+  // the key decoded the way LDocument writes its doc values.
+  static Map<String,UninvertingReader.Type> mapping(LSchema schema) {
+    String uniqueKey = schema.getUniqueKey();
+    UninvertingReader.Type type = type(schema.getFieldType(uniqueKey));
+    return (type == null) ? Collections.emptyMap() : ImmutableMap.of(uniqueKey, type);
+  }
+
+  static boolean isLegacy(FieldInfos infos, Map<String,UninvertingReader.Type> mapping) {
+    for (String field : mapping.keySet()) {
+      FieldInfo info = infos.fieldInfo(field);
+      if ((info != null) && (info.getDocValuesType() == DocValuesType.NONE)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static UninvertingReader.Type type(FieldType dataType) {
+    if (dataType.equals(LDataType.STRING)) {
+      return UninvertingReader.Type.SORTED;
+    }
+    if (dataType.equals(LDataType.INT)) {
+      return UninvertingReader.Type.INTEGER;
+    }
+    if (dataType.equals(LDataType.LONG)) {
+      return UninvertingReader.Type.LONG;
+    }
+    if (dataType.equals(LDataType.FLOAT)) {
+      return UninvertingReader.Type.FLOAT;
+    }
+    if (dataType.equals(LDataType.DOUBLE)) {
+      return UninvertingReader.Type.DOUBLE;
+    }
+    return null;
+  }
+
+}
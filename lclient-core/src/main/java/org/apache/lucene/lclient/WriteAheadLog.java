@@ -0,0 +1,434 @@
+package org.apache.lucene.lclient;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.Term;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+// one file per generation, each record is [length][crc32][op][operands]. a commit rolls to a new generation and
+// prepares the commit before any later record is applied, and drops the older generations once it is durable.
+// replay stops at the first torn or corrupt record.
+final class WriteAheadLog implements Closeable {
+
+  private static final String SUFFIX = ".log";
+  private static final int KEY_STRIPES = 64;
+  private static final byte[] END = new byte[0];
+  private static final byte UPDATE = 1;
+  private static final byte INSERT = 2;
+  private static final byte UPDATE_BLOCK = 3;
+  private static final byte REMOVE = 4;
+  private static final byte REMOVE_BY_QUERY = 5;
+
+  private static final byte INT = 1;
+  private static final byte LONG = 2;
+  private static final byte FLOAT = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte STRING = 5;
+
+  private final File dir;
+  private final LSyncPolicy syncPolicy;
+  private final long syncIntervalNanos;
+  // writers share the read lock around append and apply, so a roll never separates a logged record from its change.
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  // changes of the same key are logged and applied in the same order; a removeByQuery takes every stripe.
+  private final Striped<Lock> keys = Striped.lock(KEY_STRIPES);
+  private final List<Lock> allKeys = IntStream.range(0, KEY_STRIPES).mapToObj(keys::getAt).collect(Collectors.toList());
+  private final long firstGeneration;
+  private boolean replayed;
+  private long generation;
+  private FileChannel channel;
+  private long lastSync = System.nanoTime();
+  private boolean unsynced;
+  private IOException syncFailure;
+  private ScheduledThreadPoolExecutor syncer;
+
+  WriteAheadLog(File dir, LSyncPolicy syncPolicy, long syncIntervalMillis) throws IOException {
+    this.dir = dir;
+    this.syncPolicy = Preconditions.checkNotNull(syncPolicy);
+    this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+    Files.createDirectories(dir.toPath());
+    TreeMap<Long,File> files = files();
+    this.generation = files.isEmpty() ? 0 : files.lastKey() + 1;
+    this.firstGeneration = generation;
+    this.channel = open(generation);
+    if (syncPolicy == LSyncPolicy.INTERVAL) {
+      Preconditions.checkArgument(syncIntervalMillis > 0, "syncIntervalMillis must be > 0");
+      // an idle log is synced too, not only by the next append
+      syncer = new ScheduledThreadPoolExecutor(1,
+        new ThreadFactoryBuilder().setNameFormat("WriteAheadLog-sync-%d").setDaemon(true).build());
+      syncer.scheduleWithFixedDelay(this::syncInBackground, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  interface Change {
+    long apply() throws IOException;
+  }
+
+  interface Replayer {
+    void update(LDocument document) throws IOException;
+    void insert(LDocument document) throws IOException;
+    void updateBlock(LDocument parent, List<LDocument> children) throws IOException;
+    void remove(String id) throws IOException;
+    void removeByQuery(String query) throws IOException;
+  }
+
+  long update(LDocument document, Change change) throws IOException {
+    return write(record(UPDATE, out -> writeDocument(out, document)), keys.bulkGet(keysOf(document)), change);
+  }
+
+  long insert(LDocument document, Change change) throws IOException {
+    return write(record(INSERT, out -> writeDocument(out, document)), keys.bulkGet(keysOf(document)), change);
+  }
+
+  // the block replaces every document of its keys, so it is ordered against all of them.
+  long updateBlock(LDocument parent, List<LDocument> children, Change change) throws IOException {
+    List<String> blockKeys = new ArrayList<>(keysOf(parent));
+    for (LDocument child : children) {
+      blockKeys.addAll(keysOf(child));
+    }
+    return write(record(UPDATE_BLOCK, out -> {
+      writeDocument(out, parent);
+      out.writeInt(children.size());
+      for (LDocument child : children) {
+        writeDocument(out, child);
+      }
+    }), keys.bulkGet(blockKeys), change);
+  }
+
+  long remove(String id, Change change) throws IOException {
+    return write(record(REMOVE, out -> writeString(out, id)), keys.bulkGet(Collections.singletonList(id)), change);
+  }
+
+  long removeByQuery(String query, Change change) throws IOException {
+    return write(record(REMOVE_BY_QUERY, out -> writeString(out, query)), allKeys, change);
+  }
+
+  // a document without a key still takes a stripe, so removeByQuery is ordered against it.
+  private static List<String> keysOf(LDocument document) {
+    Term key = document.uniqueKey();
+    return Collections.singletonList((key != null) ? key.text() : "");
+  }
+
+  // stripes are taken in index order, so writers of overlapping keys never wait on each other in a cycle.
+  private long write(byte[] record, Iterable<Lock> stripes, Change change) throws IOException {
+    lock.readLock().lock();
+    try {
+      List<Lock> locked = new ArrayList<>();
+      try {
+        for (Lock stripe : stripes) {
+          stripe.lock();
+          locked.add(stripe);
+        }
+        append(record);
+        return change.apply();
+      } finally {
+        for (int i = locked.size() - 1; i >= 0; i--) {
+          locked.get(i).unlock();
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private synchronized void append(byte[] record) throws IOException {
+    if (syncFailure != null) {
+      throw syncFailure;
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(record);
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    unsynced = true;
+    if (syncPolicy == LSyncPolicy.ALWAYS || (syncPolicy == LSyncPolicy.INTERVAL && System.nanoTime() - lastSync >= syncIntervalNanos)) {
+      sync();
+    }
+  }
+
+  private void sync() throws IOException {
+    channel.force(false);
+    unsynced = false;
+    lastSync = System.nanoTime();
+  }
+
+  // a failed background sync fails the next append instead of being lost with the scheduled task.
+  private synchronized void syncInBackground() {
+    if (unsynced && channel.isOpen() && syncFailure == null) {
+      try {
+        sync();
+      } catch (IOException e) {
+        syncFailure = e;
+      }
+    }
+  }
+
+  // records logged from now on go to a new generation, and the commit of everything logged before is prepared
+  // before any of them is applied. returns the last generation the prepared commit covers.
+  long roll(IndexWriter writer) throws IOException {
+    lock.writeLock().lock();
+    try {
+      long rolled;
+      synchronized (this) {
+        sync();
+        channel.close();
+        rolled = generation++;
+        channel = open(generation);
+      }
+      writer.prepareCommit();
+      return rolled;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  void truncate(long upToGeneration) throws IOException {
+    for (File file : files().headMap(upToGeneration, true).values()) {
+      Files.deleteIfExists(file.toPath());
+    }
+  }
+
+  // records left by the previous process, oldest first, once per log; returns the number of records read.
+  // nothing after a torn or corrupt record is replayed, not even the later generations. records are logged before
+  // they are applied, so a change the index rejected, like a document with an immense term, is in the log too;
+  // it is skipped rather than keeping the collection from opening.
+  synchronized int replay(LSchema schema, Replayer replayer) throws IOException {
+    if (replayed) {
+      return 0;
+    }
+    replayed = true;
+    int count = 0;
+    for (File file : files().headMap(firstGeneration, false).values()) {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+        byte[] record;
+        while ((record = next(in)) != END) {
+          if (record == null) {
+            return count;
+          }
+          try {
+            replay(schema, new DataInputStream(new ByteArrayInputStream(record)), replayer);
+          } catch (IllegalArgumentException e) { /* rejected when it was first applied too */ }
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  private static void replay(LSchema schema, DataInputStream in, Replayer replayer) throws IOException {
+    byte op = in.readByte();
+    switch (op) {
+      case UPDATE:
+        replayer.update(readDocument(in, schema));
+        break;
+      case INSERT:
+        replayer.insert(readDocument(in, schema));
+        break;
+      case UPDATE_BLOCK:
+        LDocument parent = readDocument(in, schema);
+        int size = in.readInt();
+        List<LDocument> children = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+          children.add(readDocument(in, schema));
+        }
+        replayer.updateBlock(parent, children);
+        break;
+      case REMOVE:
+        replayer.remove(readString(in));
+        break;
+      case REMOVE_BY_QUERY:
+        replayer.removeByQuery(readString(in));
+        break;
+      default:
+        throw new IOException("unknown log operation: " + op);
+    }
+  }
+
+  // END where a generation ends cleanly, null where a crash left a partial or corrupt record.
+  private static byte[] next(DataInputStream in) throws IOException {
+    in.mark(1);
+    if (in.read() < 0) {
+      return END;
+    }
+    in.reset();
+    try {
+      int length = in.readInt();
+      long checksum = in.readLong();
+      if (length <= 0 || length > in.available()) {
+        return null;
+      }
+      byte[] record = new byte[length];
+      in.readFully(record);
+      CRC32 crc = new CRC32();
+      crc.update(record, 0, length);
+      return (crc.getValue() == checksum) ? record : null;
+    } catch (EOFException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (syncer != null) {
+      syncer.shutdownNow();
+    }
+    synchronized (this) {
+      if (channel.isOpen()) {
+        if (unsynced && syncPolicy != LSyncPolicy.NEVER) {
+          sync();
+        }
+        channel.close();
+      }
+    }
+  }
+
+  // everything logged is in the last commit, so no generation is needed anymore.
+  void clear() throws IOException {
+    close();
+    truncate(Long.MAX_VALUE);
+  }
+
+  private FileChannel open(long generation) throws IOException {
+    return FileChannel.open(new File(dir, generation + SUFFIX).toPath(),
+      StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  private TreeMap<Long,File> files() {
+    TreeMap<Long,File> files = new TreeMap<>();
+    File[] listed = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+    if (listed != null) {
+      for (File file : listed) {
+        String name = file.getName();
+        try {
+          files.put(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())), file);
+        } catch (NumberFormatException e) { /* ignore */ }
+      }
+    }
+    return files;
+  }
+
+  private interface Operands {
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  private static byte[] record(byte op, Operands operands) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0);
+    out.writeLong(0L);
+    out.writeByte(op);
+    operands.write(out);
+    out.flush();
+    byte[] record = bytes.toByteArray();
+    int length = record.length - 12;
+    CRC32 crc = new CRC32();
+    crc.update(record, 12, length);
+    ByteBuffer.wrap(record).putInt(length).putLong(crc.getValue());
+    return record;
+  }
+
+  // the stored fields are the values the document was appended with.
+  private static void writeDocument(DataOutputStream out, LDocument document) throws IOException {
+    Document doc = document.document();
+    List<IndexableField> stored = new ArrayList<>();
+    for (IndexableField field : doc) {
+      if (field.fieldType().stored()) {
+        stored.add(field);
+      }
+    }
+    out.writeInt(stored.size());
+    for (IndexableField field : stored) {
+      writeString(out, field.name());
+      Number number = field.numericValue();
+      if (number instanceof Integer) {
+        out.writeByte(INT);
+        out.writeInt(number.intValue());
+      } else if (number instanceof Long) {
+        out.writeByte(LONG);
+        out.writeLong(number.longValue());
+      } else if (number instanceof Float) {
+        out.writeByte(FLOAT);
+        out.writeFloat(number.floatValue());
+      } else if (number instanceof Double) {
+        out.writeByte(DOUBLE);
+        out.writeDouble(number.doubleValue());
+      } else {
+        out.writeByte(STRING);
+        writeString(out, field.stringValue());
+      }
+    }
+  }
+
+  private static LDocument readDocument(DataInputStream in, LSchema schema) throws IOException {
+    LDocument document = new LDocument(schema);
+    int size = in.readInt();
+    for (int i = 0; i < size; i++) {
+      String name = readString(in);
+      byte type = in.readByte();
+      switch (type) {
+        case INT:
+          document.append(name, in.readInt());
+          break;
+        case LONG:
+          document.append(name, in.readLong());
+          break;
+        case FLOAT:
+          document.append(name, in.readFloat());
+          break;
+        case DOUBLE:
+          document.append(name, in.readDouble());
+          break;
+        case STRING:
+          document.append(name, (CharSequence) readString(in));
+          break;
+        default:
+          throw new IOException("unknown log value type: " + type);
+      }
+    }
+    return document;
+  }
+
+  // writeUTF is limited to 64k, TEXT values are not.
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+}
@@ -2,9 +2,12 @@ package org.apache.lucene.lclient;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.lucene.document.Document;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.FixMethodOrder;
@@ -98,4 +101,47 @@ public class GroupingTest {
     assertThat(r2.get(1).right, is(6));
   }
 
+  @Test
+  public void test002() throws IOException {
+    Map<String,List<ImmutablePair<String,Integer>>> facets = new LQuery(cmd).find("*:*").facets("code,id", 3);
+    List<ImmutablePair<String,Integer>> codes = facets.get("code");
+    assertThat(codes.size(), is(2));
+    assertThat(codes.get(0), is(ImmutablePair.of("A01", 6)));
+    assertThat(codes.get(1), is(ImmutablePair.of("A02", 4)));
+    assertThat(Joiner.on(",").join(facets.get("id").stream().map(pair -> pair.left).iterator()), is("01,02,03"));
+
+    List<ImmutablePair<String,Integer>> top1 = new LQuery(cmd).filter("price:[0.10 TO 0.50]").facets("code", 1).get("code");
+    assertThat(top1, is(Arrays.asList(ImmutablePair.of("A01", 3))));
+  }
+
+  @Test
+  public void test003() throws IOException {
+    List<ImmutablePair<String,List<Document>>> groups = new LQuery(cmd).find("*:*").group("code")
+      .groupDocsLimit(3).sortWithinGroup("price desc").fields("id").toGroupStream()
+      .collect(Collectors.toList());
+    assertThat(groups.size(), is(2));
+    assertThat(groups.get(0).left, is("A01"));
+    assertThat(Joiner.on(",").join(groups.get(0).right.stream().map(doc -> doc.get("id")).iterator()), is("09,07,06"));
+    assertThat(Joiner.on(",").join(groups.get(1).right.stream().map(doc -> doc.get("id")).iterator()), is("10,08,04"));
+
+    List<ImmutablePair<String,List<Document>>> page = new LQuery(cmd).find("*:*").group("id").groupSort("id asc")
+      .groupOffset(2).groupLimit(3).toGroupStream()
+      .collect(Collectors.toList());
+    assertThat(Joiner.on(",").join(page.stream().map(group -> group.left).iterator()), is("03,04,05"));
+    assertThat(page.get(0).right.size(), is(1));
+    assertThat(page.get(0).right.get(0).get("code"), is("A01"));
+  }
+
+  @Test
+  public void test004() throws IOException {
+    List<ImmutablePair<String,List<Document>>> rest = new LQuery(cmd).find("*:*").group("id").groupSort("id asc")
+      .groupOffset(7).toGroupStream()
+      .collect(Collectors.toList());
+    assertThat(Joiner.on(",").join(rest.stream().map(group -> group.left).iterator()), is("08,09,10"));
+
+    List<ImmutablePair<String,List<Document>>> none = new LQuery(cmd).find("id:none").group("code").toGroupStream()
+      .collect(Collectors.toList());
+    assertThat(none.size(), is(0));
+  }
+
 }
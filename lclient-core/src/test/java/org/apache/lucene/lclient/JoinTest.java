@@ -5,7 +5,17 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queries.TermsQuery;
+import org.apache.lucene.search.DocValuesTermsQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.join.ScoreMode;
 import org.junit.Before;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
@@ -90,4 +100,151 @@ public class JoinTest {
     }
   }
 
+  @Test
+  public void test002() throws IOException {
+    try (LConnection conn = new LConnection(dataPath + sep + "db")) {
+      LCommand cmdH = new LCommand(conn, "CustomerH", customerHSchema);
+      LCommand cmdD = new LCommand(conn, "SalesOrderD", salesOrderDetailSchema);
+
+      LQuery query = new LQuery(cmdH).join(cmdD, "Hid").toField("id").fromFilter("item:monitor").sort("id asc");
+      assertThat(Joiner.on(",").join(query.toDocumentStream().map(doc -> doc.get("id")).iterator()), is("C01,C02"));
+      long misses = conn.joinQueryCacheStats().missCount();
+      long hits = conn.joinQueryCacheStats().hitCount();
+
+      assertThat(Joiner.on(",").join(query.toDocumentStream().map(doc -> doc.get("id")).iterator()), is("C01,C02"));
+      assertThat(conn.joinQueryCacheStats().hitCount(), is(hits + 1));
+      assertThat(conn.joinQueryCacheStats().missCount(), is(misses));
+
+      // a change on the from side invalidates the cached join terms
+      cmdD.update(new LDocument(cmdD.schema()).append("Did", "SD033").append("item", "Monitor").append("Hid", "C03"));
+      cmdD.refresh();
+      try {
+        assertThat(Joiner.on(",").join(query.toDocumentStream().map(doc -> doc.get("id")).iterator()), is("C01,C02,C03"));
+        assertThat(conn.joinQueryCacheStats().missCount(), is(misses + 1));
+      } finally {
+        cmdD.remove("SD033");
+        cmdD.refresh();
+      }
+    }
+  }
+
+  @Test
+  public void test003() throws IOException {
+    try (LConnection conn = new LConnection(dataPath + sep + "db")) {
+      LCommand cmdH = new LCommand(conn, "CustomerH", customerHSchema);
+      LCommand cmdD = new LCommand(conn, "SalesOrderD", salesOrderDetailSchema);
+
+      // select H.*, max(score(D)) from H inner join D on D.Hid = H.id where D.item = laptop
+      List<ImmutablePair<ScoreDoc,Document>> pairs =
+      new LQuery(cmdH)
+      .join(cmdD, "Hid").toField("id").fromQuery("item:laptop").joinScoreMode(ScoreMode.Max)
+      .toDocumentPairStream()
+      .collect(Collectors.toList());
+      assertThat(pairs.size(), is(2));
+      assertThat(pairs.stream().allMatch(pair -> pair.left.score > 0), is(true));
+      assertThat(Joiner.on(",").join(pairs.stream().map(pair -> pair.right.get("id")).sorted().iterator()), is("C01,C02"));
+
+      // term lookup and doc values ordinal matching find the same documents
+      IndexSearcher fromSearcher = cmdD.acquire();
+      IndexSearcher toSearcher = cmdH.acquire();
+      try {
+        Query fromQuery = new TermQuery(new Term("item", "monitor"));
+        Query lookup = JoinPlanner.plan(fromSearcher, fromQuery, "Hid", "id", true, LCommand.HASH_JOIN_MAX_KEYS);
+        Query ordinals = JoinPlanner.plan(fromSearcher, fromQuery, "Hid", "id", true, 0);
+        assertThat(lookup, is(instanceOf(TermsQuery.class)));
+        assertThat(ordinals, is(instanceOf(DocValuesTermsQuery.class)));
+        assertThat(toSearcher.count(lookup), is(2));
+        assertThat(toSearcher.count(ordinals), is(2));
+      } finally {
+        cmdD.release(fromSearcher);
+        cmdH.release(toSearcher);
+      }
+    }
+  }
+
+  @Test
+  public void test004() throws IOException {
+    LSchema blockSchema = LSchema.Builder()
+          .setUniqueKey("id")
+          .addField("id", LDataType.STRING)
+          .addField("customer", LDataType.TEXT, new StandardAnalyzer(), new StandardAnalyzer())
+          .addField("Did", LDataType.STRING)
+          .addField("item", LDataType.TEXT, new StandardAnalyzer(), new StandardAnalyzer()).build();
+    try (LConnection conn = new LConnection(dataPath + sep + "db")) {
+      LCommand cmd = new LCommand(conn, "SalesOrderBlock", blockSchema);
+      cmd.removeByQuery("*:*");
+
+      cmd.updateBlock(new LDocument(blockSchema).append("id", "C01").append("customer", "Apache"), Arrays.asList(
+        new LDocument(blockSchema).append("Did", "SD011").append("item", "Laptop"),
+        new LDocument(blockSchema).append("Did", "SD012").append("item", "Book"),
+        new LDocument(blockSchema).append("Did", "SD013").append("item", "Monitor")));
+      cmd.updateBlock(new LDocument(blockSchema).append("id", "C02").append("customer", "Google"), Arrays.asList(
+        new LDocument(blockSchema).append("Did", "SD021").append("item", "Monitor"),
+        new LDocument(blockSchema).append("Did", "SD022").append("item", "Laptop")));
+      cmd.updateBlock(new LDocument(blockSchema).append("id", "C03").append("customer", "Java"), Arrays.asList(
+        new LDocument(blockSchema).append("Did", "SD031").append("item", "Book")));
+      cmd.refresh();
+      assertThat(cmd.count("*:*"), is(9));
+
+      // select H.* from H inner join D on D.Hid = H.id where D.item = book
+      List<String> customers = new LQuery(cmd).joinFromChildren().fromFilter("item:book").sort("id asc")
+        .toDocumentStream().map(doc -> doc.get("customer")).collect(Collectors.toList());
+      assertThat(Joiner.on(",").join(customers), is("Apache,Java"));
+
+      // select D.* from D inner join H on H.id = D.Hid where H.customer = google
+      List<String> items = new LQuery(cmd).joinFromParents().fromFilter("customer:google").sort("Did asc")
+        .toList().stream().map(doc -> doc.get("Did")).collect(Collectors.toList());
+      assertThat(Joiner.on(",").join(items), is("SD021,SD022"));
+
+      // a block is replaced as a whole and removed with its parent
+      cmd.updateBlock(new LDocument(blockSchema).append("id", "C01").append("customer", "Apache"), Arrays.asList(
+        new LDocument(blockSchema).append("Did", "SD011").append("item", "Laptop")));
+      cmd.remove("C03");
+      cmd.refresh();
+      assertThat(cmd.count("*:*"), is(5));
+      assertThat(new LQuery(cmd).joinFromChildren().fromFilter("item:book").toList().size(), is(0));
+      assertThat(new LQuery(cmd).joinFromChildren().fromQuery("item:laptop").joinScoreMode(ScoreMode.Max)
+        .toDocumentPairStream().filter(pair -> pair.left.score > 0).count(), is(2L));
+    }
+  }
+
+
+  @Test
+  public void test005() throws IOException {
+    try (LConnection conn = new LConnection(dataPath + sep + "db")) {
+      LCommand cmdH = new LCommand(conn, "CustomerH", customerHSchema);
+      LCommand cmdD = new LCommand(conn, "SalesOrderD", salesOrderDetailSchema);
+      LCommand cmdE = new LCommand(conn, "CustomerE", customerHSchema);
+      cmdE.removeByQuery("*:*");
+      cmdE.update(new LDocument(customerHSchema).append("id", "C02").append("customer", "Google"));
+      cmdE.refresh();
+
+      // the same join into another collection is planned for that collection, not served from the first one's entry
+      LQuery query = new LQuery(cmdH).join(cmdD, "Hid").toField("id").fromFilter("item:monitor").sort("id asc");
+      assertThat(Joiner.on(",").join(query.toDocumentStream().map(doc -> doc.get("id")).iterator()), is("C01,C02"));
+      long misses = conn.joinQueryCacheStats().missCount();
+      LQuery other = new LQuery(cmdE).join(cmdD, "Hid").toField("id").fromFilter("item:monitor").sort("id asc");
+      assertThat(Joiner.on(",").join(other.toDocumentStream().map(doc -> doc.get("id")).iterator()), is("C02"));
+      assertThat(conn.joinQueryCacheStats().missCount(), is(misses + 1));
+    }
+  }
+
+  @Test
+  public void test006() throws IOException {
+    // entries are weighed by their join keys, not counted
+    JoinQueryCache cache = new JoinQueryCache(100);
+    Query joined = new TermQuery(new Term("id", "C01"));
+    for (int i = 0; i < 50; i++) {
+      Query query = cache.get("from", 1, "to", "Hid", "id", "item:" + i, null, ScoreMode.None, () -> new JoinQueryCache.Joined(joined, 10));
+      assertThat(query, is(joined));
+    }
+    assertThat(cache.size() <= 10, is(true));
+
+    // larger than the whole cache, it is returned but not kept
+    Query large = new TermQuery(new Term("id", "C02"));
+    assertThat(cache.get("from", 1, "to", "Hid", "id", "*:*", null, ScoreMode.None, () -> new JoinQueryCache.Joined(large, 1000)), is(large));
+    assertThat(cache.get("from", 1, "to", "Hid", "id", "*:*", null, ScoreMode.None, () -> new JoinQueryCache.Joined(large, 1000)), is(large));
+    assertThat(cache.stats().hitCount(), is(0L));
+  }
+
 }
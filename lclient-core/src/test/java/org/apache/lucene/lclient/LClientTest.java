@@ -3,19 +3,45 @@ package org.apache.lucene.lclient;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.DateTools;
 import org.apache.lucene.document.DateTools.Resolution;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FilterDirectory;
 import org.apache.lucene.store.LockObtainFailedException;
+import org.apache.lucene.store.RAMDirectory;
 import org.junit.Before;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
@@ -233,4 +259,588 @@ public class LClientTest {
     }
   }
 
+  @Test
+  public void test009() throws IOException {
+    try (LConnection conn = new LConnection(dataPath + sep + "db")) {
+      LCommand cmd = new LCommand(conn, "coll", schema);
+
+      assertThat(cmd.count("id:1"), is(1));
+      long hits = conn.parsedQueryCacheStats().hitCount();
+      long misses = conn.parsedQueryCacheStats().missCount();
+
+      assertThat(cmd.count("id:1"), is(1));
+      assertThat(cmd.filter("id:1").size(), is(1));
+      assertThat(conn.parsedQueryCacheStats().missCount(), is(misses));
+      assertThat(conn.parsedQueryCacheStats().hitCount() > hits, is(true));
+    }
+  }
+
+  @Test
+  public void test010() throws IOException {
+    try (LConnection conn = new LConnection(dataPath + sep + "db010")) {
+      LCommand cmd = new LCommand(conn, "lifecycle", schema);
+      cmd.removeByQuery("*:*");
+      cmd.update(new LDocument(cmd.schema()).append("id", "a"));
+      cmd.refresh();
+
+      IndexSearcher searcher = cmd.acquire();
+      IndexReader reader = searcher.getIndexReader();
+      Stream<Document> stream = cmd.documentStream("*:*", null, null, null, "id");
+
+      cmd.update(new LDocument(cmd.schema()).append("id", "b"));
+      cmd.refresh();
+      assertThat(cmd.count("*:*"), is(2));
+
+      // the old reader stays open while a query or stream still holds it
+      assertThat(searcher.count(new MatchAllDocsQuery()), is(1));
+      cmd.release(searcher);
+      assertThat(reader.getRefCount(), is(1));
+      assertThat(stream.count(), is(1L));
+      assertThat(reader.getRefCount(), is(0));
+    }
+  }
+
+  @Test
+  public void test011() throws IOException {
+    try (LConnection conn = new LConnection(dataPath + sep + "db011")) {
+      LCommand cmd = new LCommand(conn, "nrt", schema);
+      cmd.waitForGeneration(cmd.removeByQuery("*:*"));
+      assertThat(cmd.count("*:*"), is(0));
+
+      cmd.startReopenThread(/* targetMaxStaleSec */ 5.0, /* targetMinStaleSec */ 0.01);
+      long gen1 = cmd.update(new LDocument(cmd.schema()).append("id", "a"));
+      long gen2 = cmd.update(new LDocument(cmd.schema()).append("id", "b"));
+      assertThat(gen2 >= gen1, is(true));
+      cmd.waitForGeneration(gen2);
+      assertThat(cmd.count("*:*"), is(2));
+
+      cmd.waitForGeneration(cmd.remove("a"));
+      assertThat(cmd.count("*:*"), is(1));
+      cmd.stopReopenThread();
+    }
+  }
+
+  @Test
+  public void test012() throws IOException {
+    try (LConnection conn = new LConnection(dataPath + sep + "db012")) {
+      LCommand cmd = new LCommand(conn, "count", schema);
+      cmd.removeByQuery("*:*");
+      cmd.update(new LDocument(cmd.schema()).append("id", "a").append("tag", "x").append("count", 1));
+      cmd.update(new LDocument(cmd.schema()).append("id", "b").append("tag", "x").append("count", 2));
+      cmd.refresh();
+      cmd.update(new LDocument(cmd.schema()).append("id", "c").append("tag", "y").append("count", 3));
+      cmd.remove("a");
+      cmd.refresh();
+
+      assertThat(cmd.count("*:*"), is(2));
+      assertThat(cmd.count("tag:x"), is(1));
+      assertThat(cmd.count("tag:y"), is(1));
+      assertThat(cmd.count("count:[1 TO 3]"), is(2));
+      assertThat(cmd.count("*:*", "tag:y"), is(1));
+      assertThat(new LQuery(cmd).find("count:[2 TO 3]").filter("tag:x").count(), is(1));
+
+      assertThat(cmd.exists("*:*"), is(true));
+      assertThat(cmd.exists("id:a"), is(false));
+      assertThat(cmd.exists("tag:y"), is(true));
+      assertThat(new LQuery(cmd).filter("tag:z").exists(), is(false));
+    }
+  }
+
+
+  @Test
+  public void test013() throws IOException {
+    try (LConnection conn = new LConnection(dataPath + sep + "db013")) {
+      LCommand cmd = new LCommand(conn, "typed", schema);
+      cmd.removeByQuery("*:*");
+      for (int i = 0; i < 10; i++) {
+        LDocument doc = LDocument.template(cmd.schema());
+        assertThat(doc, is(sameInstance(LDocument.template(cmd.schema()))));
+        cmd.update(doc.append("id", "T" + i).append("count", i).append("price", i * 0.5)
+                      .append("star", i * 0.25f).append("date", 1_000_000_000_000L + i).append("text", "typed value"));
+      }
+      cmd.update(new LDocument(cmd.schema()).append("id", (Object) "T10").append("count", (Object) "10").append("price", (Object) 5.0));
+      cmd.refresh();
+
+      assertThat(cmd.count("*:*"), is(11));
+      assertThat(cmd.count("count:[3 TO 10]"), is(8));
+      assertThat(cmd.count("text:typed"), is(10));
+      Document doc = new LQuery(cmd).find("id:T7").toList().get(0);
+      assertThat(doc.getField("price").numericValue().doubleValue(), is(3.5));
+      assertThat(doc.getField("star").numericValue().floatValue(), is(1.75f));
+      assertThat(doc.getField("date").numericValue().longValue(), is(1_000_000_000_007L));
+      assertThat(new LQuery(cmd).find("*:*").sort("price desc").limit(1).toList().get(0).get("id"), is("T10"));
+
+      try {
+        LDocument.template(cmd.schema()).append("count", 1.5);
+        fail();
+      } catch (IllegalArgumentException e) { /* expected */ }
+      try {
+        LDocument.template(cmd.schema()).append("id", "A").append("id", "B");
+        fail();
+      } catch (IllegalArgumentException e) { /* expected */ }
+    }
+  }
+
+
+  @Test
+  public void test014() throws IOException {
+    try (LConnection conn = new LConnection(dataPath + sep + "db014")) {
+      LCommand cmd = new LCommand(conn, "bulk", schema);
+      cmd.removeByQuery("*:*");
+      cmd.refresh();
+
+      LBulkResult result = cmd.bulkUpdate(IntStream.range(0, 5000).mapToObj(i -> {
+        try {
+          return (i == 1234) ?
+            LDocument.template(cmd.schema()).append("id", "B" + i) :
+            new LDocument(cmd.schema()).append("id", "B" + i).append("count", i);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }), 4, 100, LRefreshPolicy.REFRESH);
+
+      assertThat(result.updated(), is(4999L));
+      assertThat(result.failed(), is(1));
+      assertThat(result.errors().get(0).left, is(1234L));
+      assertThat(result.errors().get(0).right, is(instanceOf(IllegalArgumentException.class)));
+      assertThat(cmd.count("*:*"), is(4999));
+      assertThat(cmd.count("count:[1000 TO 1999]"), is(999));
+
+      result = cmd.bulkUpdate(Lists.newArrayList(new LDocument(cmd.schema()).append("id", "B0").append("count", -1)).iterator());
+      assertThat(result.updated(), is(1L));
+      cmd.waitForGeneration(result.generation());
+      cmd.refresh();
+      assertThat(cmd.count("*:*"), is(4999));
+      assertThat(cmd.count("count:[-1 TO -1]"), is(1));
+    }
+  }
+
+
+  @Test
+  public void test015() throws IOException {
+    LSchema events = LSchema.Builder()
+      .setUniqueKey("id")
+      .setAppendOnly(true)
+      .addField("id", LDataType.STRING)
+      .addField("count", LDataType.INT)
+      .build();
+    try (LConnection conn = new LConnection(dataPath + sep + "db015")) {
+      LCommand cmd = new LCommand(conn, "events", events);
+      cmd.removeByQuery("*:*");
+      cmd.insert(new LDocument(events).append("id", "E0").append("count", 0));
+      LBulkResult result = cmd.bulkUpdate(IntStream.range(1, 1000).mapToObj(i -> {
+        try {
+          return new LDocument(events).append("id", "E" + i).append("count", i);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }), 2, 100, LRefreshPolicy.REFRESH);
+      assertThat(result.updated(), is(999L));
+      assertThat(cmd.count("*:*"), is(1000));
+
+      // insert never deletes by key, update still does
+      cmd.insert(new LDocument(events).append("id", "E1").append("count", -1));
+      cmd.refresh();
+      assertThat(cmd.count("id:E1"), is(2));
+      cmd.update(new LDocument(events).append("id", "E1").append("count", -2));
+      cmd.refresh();
+      assertThat(cmd.count("id:E1"), is(1));
+      assertThat(cmd.count("*:*"), is(1000));
+
+      result = cmd.bulkInsert(Lists.newArrayList(new LDocument(events).append("id", "E1000").append("count", 1000)).iterator());
+      assertThat(result.updated(), is(1L));
+    }
+  }
+
+
+  @Test
+  public void test016() throws Exception {
+    try (LConnection conn = new LConnection(dataPath + sep + "db016")) {
+      LCommand cmd = new LCommand(conn, "groupcommit", schema);
+      cmd.removeByQuery("*:*");
+      cmd.commit();
+      cmd.refresh();
+      long generation = SegmentInfos.getLastCommitGeneration(conn.getDirectory("groupcommit"));
+
+      conn.setCommitWindow(200, 1000);
+      List<CompletableFuture<Void>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        cmd.update(new LDocument(cmd.schema()).append("id", "G" + i));
+        futures.add(cmd.commitAsync());
+      }
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).get();
+      assertThat(SegmentInfos.getLastCommitGeneration(conn.getDirectory("groupcommit")), is(generation + 1));
+
+      // durable, but not visible before a refresh
+      assertThat(cmd.count("*:*"), is(0));
+      cmd.refresh();
+      assertThat(cmd.count("*:*"), is(8));
+
+      conn.setCommitWindow(60_000, 2);
+      cmd.update(new LDocument(cmd.schema()).append("id", "G8"));
+      CompletableFuture<Void> first = cmd.commitAsync();
+      cmd.commit();
+      assertThat(first.isDone(), is(true));
+      assertThat(SegmentInfos.getLastCommitGeneration(conn.getDirectory("groupcommit")), is(generation + 2));
+    }
+  }
+
+
+  @Test
+  public void test017() throws IOException {
+    LSchema logged = LSchema.Builder()
+      .setUniqueKey("id")
+      .setWriteAheadLog(LSyncPolicy.ALWAYS)
+      .addField("id", LDataType.STRING)
+      .addField("count", LDataType.INT)
+      .addField("text", LDataType.TEXT, new StandardAnalyzer(), new StandardAnalyzer())
+      .build();
+    String dbPath = dataPath + sep + "db017";
+    File logDir = new File(dbPath, "logged.wal");
+    try (LConnection conn = new LConnection(dbPath)) {
+      LCommand cmd = new LCommand(conn, "logged", logged);
+      cmd.removeByQuery("*:*");
+      cmd.update(new LDocument(logged).append("id", "W0").append("count", 0));
+      cmd.commit();
+      // only the generation written after the commit is left
+      assertThat(logDir.list().length, is(1));
+      assertThat(new File(logDir, logDir.list()[0]).length(), is(0L));
+
+      // a query that doesn't parse is rejected before it is logged
+      try {
+        cmd.removeByQuery("id:(");
+        fail();
+      } catch (IllegalArgumentException e) { /* expected */ }
+      assertThat(new File(logDir, logDir.list()[0]).length(), is(0L));
+    }
+    assertThat(logDir.list().length, is(0));
+
+    // records logged, but never applied to the index before a crash
+    try (WriteAheadLog log = new WriteAheadLog(logDir, LSyncPolicy.ALWAYS, 0)) {
+      WriteAheadLog.Change lost = () -> -1;
+      log.update(new LDocument(logged).append("id", "W1").append("count", 1).append("text", "hello world"), lost);
+      log.update(new LDocument(logged).append("id", "W2").append("count", 2), lost);
+      log.insert(new LDocument(logged).append("id", "W3").append("count", 3), lost);
+      log.remove("W2", lost);
+      // logged by an older version, it must not keep the collection from opening
+      log.removeByQuery("id:(", lost);
+      log.removeByQuery("id:W0", lost);
+    }
+
+    try (LConnection conn = new LConnection(dbPath)) {
+      LCommand cmd = new LCommand(conn, "logged", logged);
+      assertThat(cmd.count("*:*"), is(2));
+      assertThat(cmd.count("count:1 AND text:hello"), is(1));
+      assertThat(cmd.count("id:W3"), is(1));
+      assertThat(logDir.list().length, is(1));
+
+      // a second command of the same collection doesn't replay again
+      LCommand again = new LCommand(conn, "logged", logged);
+      again.refresh();
+      assertThat(again.count("id:W3"), is(1));
+    }
+  }
+
+
+  private static LSchema crashSchema() {
+    return LSchema.Builder()
+      .setUniqueKey("id")
+      .setAppendOnly(true)
+      .setWriteAheadLog(LSyncPolicy.ALWAYS)
+      .addField("id", LDataType.STRING)
+      .addField("count", LDataType.INT)
+      .build();
+  }
+
+  // run in a separate JVM by test018: inserts while commits roll the log, then halts without closing anything.
+  public static final class Crash {
+
+    public static void main(String[] args) throws Exception {
+      LSchema schema = crashSchema();
+      LConnection conn = new LConnection(args[0]);
+      LCommand cmd = new LCommand(conn, "crash", schema);
+      cmd.removeByQuery("*:*");
+      cmd.commit();
+      conn.setCommitWindow(1, 10);
+
+      AtomicBoolean inserting = new AtomicBoolean(true);
+      Thread committer = new Thread(() -> {
+        while (inserting.get()) {
+          cmd.commitAsync().join();
+        }
+      });
+      committer.start();
+      LBulkResult result = cmd.bulkInsert(IntStream.range(0, 2000).mapToObj(i -> {
+        try {
+          return new LDocument(schema).append("id", "C" + i).append("count", i);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }), 4, 50, LRefreshPolicy.NONE);
+      inserting.set(false);
+      committer.join();
+      cmd.commit();
+
+      // logged, but never committed
+      cmd.update(new LDocument(schema).append("id", "C0").append("count", -1));
+      cmd.remove("C1");
+      Runtime.getRuntime().halt(result.failed() == 0 ? 0 : 1);
+    }
+
+  }
+
+  @Test
+  public void test018() throws Exception {
+    String dbPath = dataPath + sep + "db018";
+    String java = System.getProperty("java.home") + sep + "bin" + sep + "java";
+    Process crash = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), Crash.class.getName(), dbPath)
+      .inheritIO()
+      .start();
+    assertThat(crash.waitFor(), is(0));
+
+    try (LConnection conn = new LConnection(dbPath)) {
+      LCommand cmd = new LCommand(conn, "crash", crashSchema());
+      // every insert exactly once, whichever commit it raced with
+      assertThat(cmd.count("*:*"), is(1999));
+      assertThat(cmd.count("id:C1999"), is(1));
+      assertThat(cmd.count("id:C1"), is(0));
+      assertThat(cmd.count("count:[-1 TO -1]"), is(1));
+    }
+  }
+
+  @Test
+  public void test019() throws IOException {
+    LSchema logged = LSchema.Builder()
+      .setUniqueKey("id")
+      .setWriteAheadLog(LSyncPolicy.ALWAYS)
+      .addField("id", LDataType.STRING)
+      .build();
+    String dbPath = dataPath + sep + "db019";
+    File logDir = new File(dbPath, "torn.wal");
+    WriteAheadLog.Change lost = () -> -1;
+    try (LConnection conn = new LConnection(dbPath)) {
+      new LCommand(conn, "torn", logged).removeByQuery("*:*");
+    }
+
+    // a corrupt record stops the replay, the next generation isn't replayed either
+    try (WriteAheadLog log = new WriteAheadLog(logDir, LSyncPolicy.ALWAYS, 0)) {
+      log.update(new LDocument(logged).append("id", "T1"), lost);
+      log.update(new LDocument(logged).append("id", "T2"), lost);
+    }
+    flipLastByte(newestLog(logDir));
+    try (WriteAheadLog log = new WriteAheadLog(logDir, LSyncPolicy.ALWAYS, 0)) {
+      log.update(new LDocument(logged).append("id", "T3"), lost);
+    }
+    try (LConnection conn = new LConnection(dbPath)) {
+      LCommand cmd = new LCommand(conn, "torn", logged);
+      assertThat(cmd.count("*:*"), is(1));
+      assertThat(cmd.count("id:T1"), is(1));
+      cmd.removeByQuery("*:*");
+    }
+
+    // a record cut short by a crash is dropped, the ones before it are replayed
+    try (WriteAheadLog log = new WriteAheadLog(logDir, LSyncPolicy.ALWAYS, 0)) {
+      log.update(new LDocument(logged).append("id", "T4"), lost);
+      log.update(new LDocument(logged).append("id", "T5"), lost);
+    }
+    File newest = newestLog(logDir);
+    try (RandomAccessFile file = new RandomAccessFile(newest, "rw")) {
+      file.setLength(file.length() - 3);
+    }
+    try (LConnection conn = new LConnection(dbPath)) {
+      LCommand cmd = new LCommand(conn, "torn", logged);
+      assertThat(cmd.count("*:*"), is(1));
+      assertThat(cmd.count("id:T4"), is(1));
+    }
+  }
+
+  private static File newestLog(File logDir) {
+    return Stream.of(logDir.listFiles())
+      .max(Comparator.comparing(file -> Long.parseLong(file.getName().replace(".log", ""))))
+      .get();
+  }
+
+  private static void flipLastByte(File log) throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+      file.seek(file.length() - 1);
+      int last = file.read();
+      file.seek(file.length() - 1);
+      file.write(last ^ 0xff);
+    }
+  }
+
+
+  @Test
+  public void test020() throws IOException {
+    try (LConnection conn = new LConnection(dataPath + sep + "db020")) {
+      LCommand cmd = new LCommand(conn, "release", schema);
+      cmd.removeByQuery("*:*");
+      for (int i = 0; i < 3 * LCommand.PAGE_SIZE; i++) {
+        cmd.update(new LDocument(cmd.schema()).append("id", "R" + i));
+      }
+      cmd.refresh();
+
+      // a terminal operation that stops early releases the reader too, and count() walks the pages
+      List<Function<Stream<Document>,Object>> operations = Arrays.asList(
+        stream -> stream.findFirst(),
+        stream -> stream.anyMatch(doc -> true),
+        stream -> stream.limit(1).collect(Collectors.toList()),
+        stream -> stream.count());
+      for (Function<Stream<Document>,Object> operation : operations) {
+        IndexSearcher searcher = cmd.acquire();
+        IndexReader reader = searcher.getIndexReader();
+        Stream<Document> stream = cmd.documentStream("*:*", null, null, "id asc", "id");
+        cmd.update(new LDocument(cmd.schema()).append("id", "R0"));
+        cmd.refresh();
+        cmd.release(searcher);
+        assertThat(reader.getRefCount(), is(1));
+        operation.apply(stream);
+        assertThat(reader.getRefCount(), is(0));
+      }
+    }
+  }
+
+
+  @Test
+  public void test021() throws Exception {
+    // an Error from the commit fails the waiting callers instead of leaving them blocked
+    Directory failing = new FilterDirectory(new RAMDirectory()) {
+      @Override
+      public void sync(Collection<String> names) {
+        throw new AssertionError("sync failed");
+      }
+    };
+    IndexWriter writer = new IndexWriter(failing, new IndexWriterConfig(new KeywordAnalyzer()));
+    GroupCommitter committer = new GroupCommitter(0, 1);
+    try {
+      writer.addDocument(new Document());
+      committer.commit(writer, null).get(10, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), is(instanceOf(AssertionError.class)));
+    } finally {
+      committer.close();
+      writer.rollback();
+    }
+  }
+
+
+  @Test
+  public void test022() throws IOException {
+    try (LConnection conn = new LConnection(dataPath + sep + "db022")) {
+      LCommand cmd = new LCommand(conn, "bulkerrors", schema);
+      // every failure is counted, only the first BULK_MAX_ERRORS are kept
+      LBulkResult result = cmd.bulkUpdate(Stream.generate(() -> LDocument.template(cmd.schema())).limit(2 * LCommand.BULK_MAX_ERRORS),
+        2, 100, LRefreshPolicy.NONE);
+      assertThat(result.failed(), is(2 * LCommand.BULK_MAX_ERRORS));
+      assertThat(result.errors().size(), is(LCommand.BULK_MAX_ERRORS));
+
+      // a closed writer stops the bulk instead of failing every remaining document
+      conn.getIndexWriter("bulkerrors", schema).close();
+      try {
+        cmd.bulkUpdate(IntStream.range(0, 10_000).mapToObj(i -> {
+          try {
+            return new LDocument(cmd.schema()).append("id", "B" + i);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }), 2, 100, LRefreshPolicy.NONE);
+        fail();
+      } catch (AlreadyClosedException e) { /* expected */ }
+    }
+  }
+
+
+  @Test
+  public void test023() throws Exception {
+    // a thread that wrote a template doesn't keep the schema alive
+    LSchema unused = TestUtils.getLSchema();
+    WeakReference<LSchema> collected = new WeakReference<>(unused);
+    LDocument.template(unused).append("id", "T0");
+    unused = null;
+    for (int i = 0; (i < 50) && (collected.get() != null); i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertThat(collected.get(), is(nullValue()));
+  }
+
+
+  @Test
+  public void test024() throws IOException {
+    // every numeric field takes a number its type holds exactly, and rejects anything lossy the same way
+    LDocument doc = new LDocument(schema)
+      .append("count", 2L).append("count", 3.0).append("date", 4.0f)
+      .append("star", 0.5).append("star", 16_777_216L).append("price", 1L << 53).append("price", (Object) 0.1f);
+    assertThat(doc.document().getFields("count").length, is(4));
+
+    List<ImmutablePair<String,Object>> lossy = Arrays.asList(
+      ImmutablePair.of("count", 1L << 31),
+      ImmutablePair.of("count", 1.5),
+      ImmutablePair.of("date", 0x1p63),
+      ImmutablePair.of("date", Double.NaN),
+      ImmutablePair.of("star", 0.1),
+      ImmutablePair.of("star", 16_777_217L),
+      ImmutablePair.of("price", (1L << 53) + 1));
+    for (ImmutablePair<String,Object> value : lossy) {
+      try {
+        new LDocument(schema).append(value.left, value.right);
+        fail(value.toString());
+      } catch (IllegalArgumentException e) { /* expected */ }
+    }
+  }
+
+  @Test
+  public void test025() throws IOException {
+    try (LConnection conn = new LConnection(dataPath + sep + "db")) {
+      LCommand cmd = new LCommand(conn, "coll", schema);
+
+      assertThat(cmd.filter("id:1").size(), is(1));
+      long parsedMisses = conn.parsedQueryCacheStats().missCount();
+      long hits = cmd.filterCache().hitCount();
+      long misses = cmd.filterCache().missCount();
+
+      assertThat(cmd.filter("id:1").size(), is(1));
+      assertThat(conn.parsedQueryCacheStats().missCount(), is(parsedMisses));
+      assertThat(cmd.filterCache().hitCount() > hits, is(true));
+      assertThat(cmd.filterCache().missCount(), is(misses));
+    }
+  }
+
+  @Test
+  public void test026() throws IOException {
+    LSchema logged = LSchema.Builder()
+      .setUniqueKey("id")
+      .setWriteAheadLog(LSyncPolicy.ALWAYS)
+      .addField("id", LDataType.STRING)
+      .addField("tag", LDataType.STRING)
+      .build();
+    String dbPath = dataPath + sep + "db026";
+    File logDir = new File(dbPath, "rejected.wal");
+    LDocument immense = new LDocument(logged).append("id", "I1").append("tag", StringUtils.repeat('x', 40000));
+    try (LConnection conn = new LConnection(dbPath)) {
+      LCommand cmd = new LCommand(conn, "rejected", logged);
+      cmd.removeByQuery("*:*");
+      try {
+        cmd.update(immense);
+        fail();
+      } catch (IllegalArgumentException e) { /* expected */ }
+    }
+
+    // the rejected document was logged before it was applied, then the process crashed
+    WriteAheadLog.Change lost = () -> -1;
+    try (WriteAheadLog log = new WriteAheadLog(logDir, LSyncPolicy.ALWAYS, 0)) {
+      log.update(new LDocument(logged).append("id", "I0"), lost);
+      log.update(immense, lost);
+      log.update(new LDocument(logged).append("id", "I2"), lost);
+    }
+
+    try (LConnection conn = new LConnection(dbPath)) {
+      LCommand cmd = new LCommand(conn, "rejected", logged);
+      assertThat(cmd.count("*:*"), is(2));
+      assertThat(cmd.count("id:I1"), is(0));
+      assertThat(logDir.list().length, is(1));
+    }
+  }
+
 }
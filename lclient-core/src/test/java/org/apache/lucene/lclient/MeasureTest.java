@@ -131,6 +131,12 @@ public class MeasureTest {
     assertThat(docsC.size(), is(DOC_SIZE));
     System.out.println("List.size():"+stopwatch);
 
+    stopwatch = Stopwatch.createStarted();
+    long exported = new LQuery(cmd).find("*:*").filter("*:*").export().count();
+    System.out.println("LQuery.export():"+stopwatch);
+
+    assertThat(exported, is((long) DOC_SIZE));
+
     stopwatch = Stopwatch.createStarted();
     cmd.forceMerge();
     System.out.println("forceMerging:"+stopwatch);
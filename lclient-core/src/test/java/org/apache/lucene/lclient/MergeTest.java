@@ -1,7 +1,21 @@
 package org.apache.lucene.lclient;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.uninverting.UninvertingReader;
 import org.junit.Before;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
@@ -56,6 +70,57 @@ public class MergeTest {
     conn.close(); // by CommitOnClose, segment > 10 -> merged
   }
 
+  @Test
+  public void test006() throws IOException {
+    // segments as written before the unique key had doc values
+    IndexWriterConfig config = new IndexWriterConfig(schema.getIndexAnalyzer()).setOpenMode(OpenMode.CREATE);
+    try (IndexWriter writer = new IndexWriter(FSDirectory.open(new File(dataPath + sep + "db", "legacy").toPath()), config)) {
+      for (int i = 0; i < 6; i++) {
+        Document doc = new LDocument(schema).append("id", "L" + i).append("count", i).document();
+        doc.removeFields("id");
+        doc.add(new Field("id", "L" + i, LDataType.STRING));
+        writer.addDocument(doc);
+        if (i % 2 == 1) writer.commit();
+      }
+    }
+
+    try (LConnection conn = new LConnection(dataPath + sep + "db")) {
+      LCommand cmd = new LCommand(conn, "legacy", schema);
+      cmd.update(new LDocument(schema).append("id", "L6").append("count", 6));
+      cmd.refresh();
+      assertThat(uninvertedLeaves(cmd), is(3L));
+      assertThat(ids(cmd), is(IntStream.range(0, 7).mapToObj(i -> "L" + (6 - i)).collect(Collectors.toList())));
+
+      cmd.migrateUniqueKey();
+      assertThat(uninvertedLeaves(cmd), is(0L));
+      IndexSearcher searcher = cmd.acquire();
+      try {
+        for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+          assertThat(leaf.reader().getFieldInfos().fieldInfo("id").getDocValuesType(), is(DocValuesType.SORTED));
+        }
+      } finally {
+        cmd.release(searcher);
+      }
+      assertThat(ids(cmd), is(IntStream.range(0, 7).mapToObj(i -> "L" + (6 - i)).collect(Collectors.toList())));
+      assertThat(new LQuery(cmd).find("id:L3").count(), is(1));
+    }
+  }
+
+  private long uninvertedLeaves(LCommand cmd) throws IOException {
+    IndexSearcher searcher = cmd.acquire();
+    try {
+      return searcher.getIndexReader().leaves().stream()
+        .filter(leaf -> leaf.reader() instanceof UninvertingReader).count();
+    } finally {
+      cmd.release(searcher);
+    }
+  }
+
+  private List<String> ids(LCommand cmd) throws IOException {
+    return new LQuery(cmd).find("*:*").sort("id desc").fields("id").toList()
+      .stream().map(doc -> doc.get("id")).collect(Collectors.toList());
+  }
+
   private void insertDocs(String collName, int n, boolean refresh) throws IOException {
     LConnection conn = new LConnection(dataPath + sep + "db");
     LCommand cmd = new LCommand(conn, collName, schema);
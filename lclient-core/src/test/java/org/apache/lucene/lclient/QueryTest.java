@@ -1,16 +1,31 @@
 package org.apache.lucene.lclient;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.ScoreDoc;
 import org.junit.Before;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
 
 import com.google.common.base.StandardSystemProperty;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
 
 import static org.junit.Assert.*;
 import static org.hamcrest.CoreMatchers.*;
@@ -231,4 +246,413 @@ public class QueryTest {
       assertThat(cmd.count("text_2g:\"nelr\""), is(0));
     }
   }
+
+  @Test
+  public void test005() throws IOException {
+    try (LConnection conn = new LConnection(dataPath + sep + "db")) {
+      LCommand cmd = new LCommand(conn, "coll", schema);
+
+      List<String> ids = cmd.documentStream("*:*", null, null, "id asc", "id")
+        .map(doc -> doc.get("id"))
+        .collect(Collectors.toList());
+      assertThat(ids.size(), is(cmd.count("*:*")));
+      assertThat(Ordering.natural().isStrictlyOrdered(ids), is(true));
+
+      assertThat(cmd.documentStream("*:*", null, 7, "id asc", "id").count(), is(7L));
+      assertThat(cmd.documentStream("id:not-exist-id", null, null, null, "id").count(), is(0L));
+    }
+  }
+
+  @Test
+  public void test006() throws IOException {
+    try (LConnection conn = new LConnection(dataPath + sep + "db")) {
+      LCommand cmd = new LCommand(conn, "filtercache", schema);
+      cmd.removeByQuery("*:*");
+      IntStream.range(0, 10).forEach(i -> {
+        try {
+          cmd.update(new LDocument(schema).append("id", "F" + i).append("tag", (i % 2 == 0) ? "even" : "odd"));
+        } catch (IOException e) { }
+      });
+      cmd.refresh();
+
+      LFilterCache cache = cmd.filterCache();
+      assertThat(cmd.filter("tag:even").size(), is(5));
+      long hits = cache.hitCount();
+      long misses = cache.missCount();
+
+      assertThat(cmd.filter("tag:even").size(), is(5));
+      assertThat(cache.hitCount(), is(hits + 1));
+      assertThat(cache.missCount(), is(misses));
+      assertThat(cache.ramBytesUsed() > 0, is(true));
+
+      // the old segment keeps its bitset, only the new one is computed
+      cmd.update(new LDocument(schema).append("id", "F10").append("tag", "even"));
+      cmd.refresh();
+      assertThat(cmd.filter("tag:even").size(), is(6));
+      assertThat(cache.hitCount(), is(hits + 2));
+      assertThat(cache.missCount(), is(misses + 1));
+    }
+  }
+
+  @Test
+  public void test007() throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try (LConnection conn = new LConnection(dataPath + sep + "db")) {
+      LCommand cmd = new LCommand(conn, "parallel", schema);
+      cmd.removeByQuery("*:*");
+      for (int i = 0; i < 30; i++) {
+        cmd.update(new LDocument(schema).append("id", String.format("P%02d", i)).append("count", i));
+        if (i % 10 == 9) cmd.refresh();
+      }
+      IndexSearcher searcher = cmd.acquire();
+      try {
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        assertThat(leaves.size() >= 3, is(true));
+        assertThat(ParallelSearch.slices(leaves, 10).length, is(leaves.size()));
+        assertThat(ParallelSearch.slices(leaves, 1000).length, is(1));
+      } finally {
+        cmd.release(searcher);
+      }
+
+      List<String> sequential = cmd.documentStream("count:[5 TO 24]", null, null, "count desc", "id")
+        .map(doc -> doc.get("id")).collect(Collectors.toList());
+
+      conn.setSearchExecutor(executor, 5);
+      assertThat(cmd.count("count:[5 TO 24]"), is(20));
+      List<String> parallel = cmd.documentStream("count:[5 TO 24]", null, null, "count desc", "id")
+        .map(doc -> doc.get("id")).collect(Collectors.toList());
+      assertThat(parallel, is(sequential));
+
+      assertThat(new LQuery(cmd).find("count:[5 TO 24]").parallel(false).count(), is(20));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void test008() throws IOException {
+    try (LConnection conn = new LConnection(dataPath + sep + "db")) {
+      LCommand cmd = new LCommand(conn, "scoremode", schema);
+      cmd.removeByQuery("*:*");
+      for (int i = 0; i < 10; i++) {
+        cmd.update(new LDocument(schema).append("id", "S" + i).append("tag", (i % 2 == 0) ? "even" : "odd"));
+      }
+      cmd.refresh();
+
+      List<Float> scores = new LQuery(cmd).find("tag:even").scoreMode(LScoreMode.NO_SCORE).toDocumentPairStream()
+        .map(pair -> pair.left.score).collect(Collectors.toList());
+      assertThat(scores.size(), is(5));
+      assertThat(scores.stream().allMatch(score -> score.isNaN()), is(true));
+
+      List<Integer> docIds = cmd.documentPairStream(null, "tag:odd", null, null, "id")
+        .map(pair -> pair.left.doc).collect(Collectors.toList());
+      assertThat(docIds.size(), is(5));
+      assertThat(Ordering.natural().isStrictlyOrdered(docIds), is(true));
+
+      List<Float> scored = new LQuery(cmd).find("tag:even").toDocumentPairStream()
+        .map(pair -> pair.left.score).collect(Collectors.toList());
+      assertThat(scored.stream().allMatch(score -> score > 0), is(true));
+
+      List<String> ids = new LQuery(cmd).find("tag:even").sort("id desc").fields("id").scoreMode(LScoreMode.NO_SCORE).toDocumentStream()
+        .map(doc -> doc.get("id")).collect(Collectors.toList());
+      assertThat(ids, is(Ordering.natural().reverse().sortedCopy(ids)));
+      assertThat(ids.size(), is(5));
+    }
+  }
+
+  @Test
+  public void test009() throws IOException {
+    try (LConnection conn = new LConnection(dataPath + sep + "db")) {
+      LCommand cmd = new LCommand(conn, "projection", schema);
+      cmd.removeByQuery("*:*");
+      for (int i = 0; i < 10; i++) {
+        cmd.update(new LDocument(schema).append("id", "D" + i).append("price", i * 1.5).append("star", i * 0.5f)
+          .append("count", i).append("date", 1000L * i).append("tag", "t" + (i % 3)).append("text", "text " + i));
+      }
+      cmd.refresh();
+
+      String fields = "id,price,star,count,date,tag,text";
+      IndexSearcher searcher = cmd.acquire();
+      try {
+        DocValuesProjection projection = DocValuesProjection.create(searcher.getIndexReader(), schema, Sets.newHashSet(fields.split(",")));
+        Document doc = projection.document(0);
+        assertThat(doc, is(notNullValue()));
+        assertThat(doc.getFields().size(), is(7));
+        assertThat(DocValuesProjection.create(searcher.getIndexReader(), schema, Sets.newHashSet("id", "unknown")), is(nullValue()));
+      } finally {
+        cmd.release(searcher);
+      }
+
+      List<Document> docs = cmd.find("*:*", null, null, "id asc", fields);
+      assertThat(docs.size(), is(10));
+      for (int i = 0; i < 10; i++) {
+        Document doc = docs.get(i);
+        assertThat(doc.get("id"), is("D" + i));
+        assertThat(doc.getField("price").numericValue().doubleValue(), is(i * 1.5));
+        assertThat(doc.getField("star").numericValue().floatValue(), is(i * 0.5f));
+        assertThat(doc.getField("count").numericValue().intValue(), is(i));
+        assertThat(doc.getField("date").numericValue().longValue(), is(1000L * i));
+        assertThat(doc.get("count"), is(String.valueOf(i)));
+        assertThat(doc.get("tag"), is("t" + (i % 3)));
+        assertThat(doc.get("text"), is("text " + i));
+      }
+    }
+  }
+
+  @Test
+  public void test010() throws IOException {
+    try (LConnection conn = new LConnection(dataPath + sep + "db")) {
+      LCommand cmd = new LCommand(conn, "fetch", schema);
+      cmd.removeByQuery("*:*");
+      for (int i = 0; i < 50; i++) {
+        cmd.update(new LDocument(schema).append("id", String.format("B%02d", i)).append("count", i).append("text", "text " + i));
+        if (i % 20 == 19) cmd.refresh();
+      }
+      cmd.refresh();
+
+      List<String> ids = cmd.documentStream("*:*", null, null, "count desc", null)
+        .map(doc -> doc.get("id")).collect(Collectors.toList());
+      assertThat(ids.size(), is(50));
+      assertThat(ids, is(Ordering.natural().reverse().sortedCopy(ids)));
+      assertThat(cmd.documentStream("*:*", null, null, "count desc", "text").findFirst().get().get("text"), is("text 49"));
+
+      IndexSearcher searcher = cmd.acquire();
+      try {
+        ScoreDoc[] hits = searcher.search(new MatchAllDocsQuery(), 50).scoreDocs;
+        Collections.reverse(Arrays.asList(hits));
+        Document[] docs = new DocumentFetcher(searcher.getIndexReader(), schema, null).fetch(hits);
+        for (int i = 0; i < hits.length; i++) {
+          assertThat(docs[i].get("id"), is(searcher.doc(hits[i].doc).get("id")));
+        }
+      } finally {
+        cmd.release(searcher);
+      }
+    }
+  }
+
+  @Test
+  public void test011() throws IOException {
+    try (LConnection conn = new LConnection(dataPath + sep + "db")) {
+      LCommand cmd = new LCommand(conn, "export", schema);
+      cmd.removeByQuery("*:*");
+      for (int i = 0; i < 40; i++) {
+        cmd.update(new LDocument(schema).append("id", String.format("E%02d", i)).append("count", i));
+        if (i % 10 == 9) cmd.refresh();
+      }
+      cmd.remove("E05");
+      cmd.refresh();
+
+      List<String> ids = new LQuery(cmd).find("*:*").fields("id").export()
+        .map(doc -> doc.get("id")).collect(Collectors.toList());
+      assertThat(ids.size(), is(39));
+      assertThat(ids.contains("E05"), is(false));
+
+      Set<String> parallel = new LQuery(cmd).filter("count:[10 TO 39]").export().parallel()
+        .map(doc -> doc.get("id")).collect(Collectors.toSet());
+      assertThat(parallel.size(), is(30));
+
+      assertThat(new LQuery(cmd).find("id:not-exist-id").export().count(), is(0L));
+    }
+  }
+
+  @Test
+  public void test012() throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try (LConnection conn = new LConnection(dataPath + sep + "db")) {
+      LCommand cmd = new LCommand(conn, "aggregate", schema);
+      cmd.removeByQuery("*:*");
+      for (int i = 1; i <= 20; i++) {
+        LDocument doc = new LDocument(schema).append("id", "A" + i).append("price", i * 0.5).append("count", i);
+        if (i % 2 == 0) doc.append("star", i * 0.25f);
+        cmd.update(doc);
+        if (i % 5 == 0) cmd.refresh();
+      }
+
+      Map<String,LStats> stats = new LQuery(cmd).find("*:*").aggregate("price,star,count");
+      assertThat(stats.get("count").count(), is(20L));
+      assertThat(stats.get("count").sum(), is(210.0));
+      assertThat(stats.get("count").min(), is(1.0));
+      assertThat(stats.get("count").max(), is(20.0));
+      assertThat(stats.get("price").avg(), is(5.25));
+      assertThat(stats.get("star").count(), is(10L));
+      assertThat(stats.get("star").max(), is(5.0));
+
+      conn.setSearchExecutor(executor, 1);
+      LStats filtered = new LQuery(cmd).filter("count:[11 TO 20]").aggregate("count").get("count");
+      assertThat(filtered.count(), is(10L));
+      assertThat(filtered.sum(), is(155.0));
+
+      LStats empty = new LQuery(cmd).find("id:not-exist-id").aggregate("price").get("price");
+      assertThat(empty.count(), is(0L));
+      assertThat(Double.isNaN(empty.avg()), is(true));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+
+  @Test
+  public void test013() throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try (LConnection conn = new LConnection(dataPath + sep + "db")) {
+      LCommand cmd = new LCommand(conn, "highlight", schema);
+      cmd.removeByQuery("*:*");
+      for (int i = 0; i < 80; i++) {
+        String text = (i % 4 == 0) ? "lucene document " + i : "lucene apple document " + i;
+        cmd.update(new LDocument(schema).append("id", String.format("H%02d", i)).append("text", text));
+        if (i % 20 == 19) cmd.refresh();
+      }
+
+      List<String> ids = new LQuery(cmd).find("text:apple").sort("id asc").fields("id")
+        .toHighlightedStream("text", 100, 3)
+        .peek(pair -> assertThat(pair.right, containsString("<b>apple</b>")))
+        .map(pair -> pair.left.get("id")).collect(Collectors.toList());
+      assertThat(ids.size(), is(60));
+      assertThat(Ordering.natural().isOrdered(ids), is(true));
+
+      conn.setSearchExecutor(executor, 1);
+      List<String> fragments = new LQuery(cmd).filter("text:apple").sort("id desc")
+        .toHighlightedStream("text", 100, 3)
+        .map(pair -> pair.right).collect(Collectors.toList());
+      assertThat(fragments.size(), is(60));
+      assertThat(fragments.get(0), is("lucene <b>apple</b> document 79"));
+      assertThat(fragments.get(59), is("lucene <b>apple</b> document 1"));
+
+      assertThat(new LQuery(cmd).find("id:H00").toHighlightedStream("text", 100, 3)
+        .findFirst().get().right, is(""));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+
+  @Test
+  public void test014() throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try (LConnection conn = new LConnection(dataPath + sep + "db")) {
+      LCommand cmd = new LCommand(conn, "highlight_postings", schema);
+      cmd.removeByQuery("*:*");
+      for (int i = 0; i < 40; i++) {
+        String text = (i % 4 == 0) ? "Lucene document " + i + "." : "Lucene document " + i + ". An apple a day.";
+        cmd.update(new LDocument(schema).append("id", String.format("P%02d", i)).append("text_po", text));
+        if (i % 10 == 9) cmd.refresh();
+      }
+
+      IndexSearcher searcher = cmd.acquire();
+      try {
+        for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+          assertThat(leaf.reader().getFieldInfos().fieldInfo("text_po").hasVectors(), is(false));
+        }
+      } finally {
+        cmd.release(searcher);
+      }
+
+      conn.setSearchExecutor(executor, 1);
+      List<String> fragments = new LQuery(cmd).find("text_po:apple").sort("id asc")
+        .toHighlightedStream("text_po", 100, 3)
+        .map(pair -> pair.right).collect(Collectors.toList());
+      assertThat(fragments.size(), is(30));
+      assertThat(fragments.get(0), is("An <b>apple</b> a day."));
+
+      assertThat(new LQuery(cmd).find("id:P00").toHighlightedStream("text_po", 100, 3)
+        .findFirst().get().right, is(""));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void test015() throws IOException {
+    try (LConnection conn = new LConnection(dataPath + sep + "db")) {
+      LCommand cmd = new LCommand(conn, "scoremode_default", schema);
+      cmd.removeByQuery("*:*");
+      for (int i = 0; i < 10; i++) {
+        cmd.update(new LDocument(schema).append("id", "D" + i).append("tag", (i % 2 == 0) ? "even" : "odd"));
+      }
+      cmd.refresh();
+
+      List<ScoreDoc> filtered = cmd.documentPairStream(null, "tag:odd", null, null, "id")
+        .map(pair -> pair.left).collect(Collectors.toList());
+      assertThat(filtered.size(), is(5));
+      assertThat(filtered.stream().allMatch(scoreDoc -> scoreDoc.score > 0), is(true));
+
+      List<ScoreDoc> sorted = cmd.documentPairStream("tag:even", null, null, "id desc", "id")
+        .map(pair -> pair.left).collect(Collectors.toList());
+      assertThat(sorted.size(), is(5));
+      assertThat(sorted.stream().allMatch(scoreDoc -> scoreDoc.score > 0), is(true));
+
+      List<ScoreDoc> unscored = cmd.documentPairStream("tag:even", null, null, "id desc", "id", LScoreMode.NO_SCORE)
+        .map(pair -> pair.left).collect(Collectors.toList());
+      assertThat(unscored.size(), is(5));
+      assertThat(unscored.stream().allMatch(scoreDoc -> Float.isNaN(scoreDoc.score)), is(true));
+    }
+  }
+
+  @Test
+  public void test016() throws IOException {
+    try (LConnection conn = new LConnection(dataPath + sep + "db")) {
+      LCommand cmd = new LCommand(conn, "aggregate_long", schema);
+      cmd.removeByQuery("*:*");
+      cmd.update(new LDocument(schema).append("id", "L1").append("date", 1L << 53).append("price", 1.5));
+      cmd.update(new LDocument(schema).append("id", "L2").append("date", 1L).append("price", 2.5));
+      cmd.update(new LDocument(schema).append("id", "L3").append("date", 1L));
+      cmd.refresh();
+
+      Map<String,LStats> stats = new LQuery(cmd).find("*:*").aggregate("date,price");
+      assertThat(stats.get("date").longSum(), is((1L << 53) + 2));
+      assertThat(stats.get("price").sum(), is(4.0));
+      try {
+        stats.get("price").longSum();
+        fail("Should not get here");
+      } catch (IllegalStateException e) {
+        assertThat(e.getMessage(), is("sum of a floating point field has no exact long value"));
+      }
+    }
+  }
+
+  @Test
+  public void test017() throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try (LConnection conn = new LConnection(dataPath + sep + "db")) {
+      LCommand cmd = new LCommand(conn, "parallel_pages", schema);
+      cmd.removeByQuery("*:*");
+      for (int i = 0; i < 4200; i++) {
+        cmd.update(new LDocument(schema).append("id", "PP" + i).append("tag", "same"));
+        if (i == 1199) cmd.refresh();
+      }
+      cmd.refresh();
+
+      // tied scores and tied sort values page across slices of 1200 and 3000 docs
+      conn.setSearchExecutor(executor, 1000);
+      assertThat(new LQuery(cmd).find("*:*").fields("id").toDocumentStream().count(), is(4200L));
+      assertThat(new LQuery(cmd).find("*:*").sort("tag asc").fields("id").toDocumentStream().count(), is(4200L));
+      assertThat(new LQuery(cmd).find("*:*").sort("tag asc").fields("id").scoreMode(LScoreMode.NO_SCORE)
+        .toDocumentStream().map(doc -> doc.get("id")).distinct().count(), is(4200L));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void test018() throws IOException {
+    AtomicInteger started = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(4, runnable -> {
+      started.incrementAndGet();
+      return new Thread(runnable);
+    });
+    try (LConnection conn = new LConnection(dataPath + sep + "db")) {
+      LCommand cmd = new LCommand(conn, "parallel_pages", schema);
+      conn.setSearchExecutor(executor, 1000);
+
+      // a sequential query never reaches the executor, and the next query is parallel again
+      assertThat(new LQuery(cmd).find("tag:same tag:other").parallel(false).count(), is(4200));
+      assertThat(new LQuery(cmd).find("tag:same tag:other").sort("tag asc").parallel(false).fields("id").toDocumentStream().count(), is(4200L));
+      assertThat(started.get(), is(0));
+      assertThat(new LQuery(cmd).find("tag:same tag:other").count(), is(4200));
+      assertThat(started.get() > 0, is(true));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
 }
@@ -33,6 +33,7 @@ public class TestUtils {
        .addField("text_kw", LDataType.TEXT, new KeywordAnalyzer(), new KeywordAnalyzer())
        .addField("text_1g", LDataType.TEXT, new NGramAnalyzer(1, 1), new NGramAnalyzer(1, 1))
        .addField("text_2g", LDataType.TEXT, new NGramAnalyzer(2, 2), new NGramAnalyzer(2, 2))
+       .addField("text_po", LDataType.TEXT, new StandardAnalyzer(), new StandardAnalyzer(), LHighlightMode.POSTINGS)
        .build();
      return schema;
    }